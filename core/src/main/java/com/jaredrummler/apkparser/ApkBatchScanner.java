@@ -0,0 +1,476 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser;
+
+import com.jaredrummler.apkparser.model.AndroidManifest;
+import com.jaredrummler.apkparser.model.ApkMeta;
+import com.jaredrummler.apkparser.model.CertificateMeta;
+import com.jaredrummler.apkparser.model.DexInfo;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses many APKs concurrently.
+ *
+ * <p>Files are parsed on a fixed number of worker threads and their results are handed back
+ * through a bounded queue, so a slow consumer stalls the workers instead of piling up results.
+ * Before a file is parsed, its size is reserved against a memory budget; large APKs wait until
+ * enough of the budget is free, which keeps many of them from being parsed at once. A file that
+ * fails to parse is reported as a failed {@link Result} and does not stop the scan.</p>
+ *
+ * <pre>
+ * ApkBatchScanner scanner = ApkBatchScanner.newBuilder()
+ *     .facets(ApkBatchScanner.Facet.META | ApkBatchScanner.Facet.CERTIFICATE)
+ *     .threads(8)
+ *     .build();
+ * ApkBatchScanner.Results results = scanner.scan(files);
+ * try {
+ *   while (results.hasNext()) {
+ *     ApkBatchScanner.Result result = results.next();
+ *     ...
+ *   }
+ * } finally {
+ *   results.close();
+ * }
+ * </pre>
+ */
+public class ApkBatchScanner {
+
+  /**
+   * The parts of an APK to extract. Combine them with {@code |}.
+   */
+  public static final class Facet {
+
+    /** {@link ApkParser#getApkMeta()} */
+    public static final int META = 1;
+    /** {@link ApkParser#getAndroidManifest()} */
+    public static final int MANIFEST = 1 << 1;
+    /** {@link ApkParser#getCertificateMeta()} */
+    public static final int CERTIFICATE = 1 << 2;
+    /** {@link ApkParser#getDexInfos()} */
+    public static final int DEX_CLASSES = 1 << 3;
+    /** {@link ApkParser#getLocales()} */
+    public static final int LOCALES = 1 << 4;
+
+    public static final int ALL = META | MANIFEST | CERTIFICATE | DEX_CLASSES | LOCALES;
+
+    private Facet() {
+    }
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  private final int facets;
+  private final int threads;
+  private final int queueCapacity;
+  private final int memoryBudgetKb;
+  private final Locale locale;
+
+  private ApkBatchScanner(Builder builder) {
+    this.facets = builder.facets;
+    this.threads = builder.threads;
+    this.queueCapacity = builder.queueCapacity;
+    long memoryBudgetKb = Math.max(1, builder.memoryBudget >> 10);
+    this.memoryBudgetKb = (int) Math.min(Integer.MAX_VALUE, memoryBudgetKb);
+    this.locale = builder.locale;
+  }
+
+  /**
+   * Start scanning the files. The files are read from the iterator on a background thread, and
+   * only as fast as the workers can take them.
+   *
+   * @param files
+   *     the APKs to parse
+   * @return the results, in completion order. Close them to stop the scan early.
+   */
+  public Results scan(Iterable<File> files) {
+    Results results = new Results(files.iterator());
+    results.start();
+    return results;
+  }
+
+  /**
+   * The outcome of parsing one APK. Only the requested facets are set.
+   */
+  public static class Result {
+
+    private final File file;
+    ApkMeta apkMeta;
+    AndroidManifest androidManifest;
+    CertificateMeta certificateMeta;
+    List<DexInfo> dexInfos;
+    Set<Locale> locales;
+    Throwable error;
+
+    Result(File file) {
+      this.file = file;
+    }
+
+    public File getFile() {
+      return file;
+    }
+
+    /**
+     * @return {@code true} if every requested facet was extracted.
+     */
+    public boolean isSuccess() {
+      return error == null;
+    }
+
+    /**
+     * @return the reason the file could not be parsed, or {@code null} if it was parsed.
+     * Facets extracted before the failure are still available.
+     */
+    public Throwable getError() {
+      return error;
+    }
+
+    public ApkMeta getApkMeta() {
+      return apkMeta;
+    }
+
+    public AndroidManifest getAndroidManifest() {
+      return androidManifest;
+    }
+
+    public CertificateMeta getCertificateMeta() {
+      return certificateMeta;
+    }
+
+    public List<DexInfo> getDexInfos() {
+      return dexInfos;
+    }
+
+    public Set<Locale> getLocales() {
+      return locales;
+    }
+
+    @Override public String toString() {
+      return "Result{file=" + file + ", error=" + error + "}";
+    }
+  }
+
+  /**
+   * The results of a running scan. Iterating blocks until the next file has been parsed. An
+   * {@link Error} thrown while parsing, e.g. {@link OutOfMemoryError}, ends the scan and is thrown
+   * from {@link #hasNext()}.
+   */
+  public class Results implements Iterator<Result>, Closeable {
+
+    // posted once every file has been parsed
+    private final Result end = new Result(null);
+
+    private final Iterator<File> files;
+    private final BlockingQueue<Result> queue = new ArrayBlockingQueue<>(queueCapacity);
+    private final Semaphore workers = new Semaphore(threads);
+    private final Semaphore memory = new Semaphore(memoryBudgetKb);
+    // files submitted but not yet queued, plus one for the feeder while it runs
+    private final AtomicInteger pending = new AtomicInteger(1);
+    private final ExecutorService executor;
+    private final Thread feeder;
+    private volatile boolean closed;
+    private volatile RuntimeException feedError;
+    // an Error of a worker, e.g. OutOfMemoryError, ends the scan
+    private volatile Error workerError;
+    private Result next;
+    private boolean done;
+
+    Results(Iterator<File> files) {
+      this.files = files;
+      this.executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("worker"));
+      this.feeder = new NamedThreadFactory("feeder").newThread(new Runnable() {
+        @Override public void run() {
+          feed();
+        }
+      });
+    }
+
+    void start() {
+      feeder.start();
+    }
+
+    private void feed() {
+      try {
+        while (!closed && workerError == null && files.hasNext()) {
+          final File file = files.next();
+          final int weight = weightOf(file);
+          workers.acquire();
+          memory.acquire(weight);
+          if (closed) {
+            workers.release();
+            memory.release(weight);
+            break;
+          }
+          pending.incrementAndGet();
+          executor.execute(new Runnable() {
+            @Override public void run() {
+              try {
+                offer(parse(file));
+              } catch (Error e) {
+                if (workerError == null) {
+                  workerError = e;
+                }
+                throw e;
+              } finally {
+                memory.release(weight);
+                workers.release();
+                finishOne();
+              }
+            }
+          });
+        }
+      } catch (InterruptedException e) {
+        // closed
+      } catch (RuntimeException e) {
+        feedError = e;
+      } finally {
+        finishOne();
+      }
+    }
+
+    private void finishOne() {
+      if (pending.decrementAndGet() == 0) {
+        offer(end);
+        executor.shutdown();
+      }
+    }
+
+    private void offer(Result result) {
+      try {
+        while (!closed) {
+          if (queue.offer(result, 100, TimeUnit.MILLISECONDS)) {
+            return;
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private int weightOf(File file) {
+      // the parsed size of an APK roughly follows its file size
+      long kb = file.length() >> 10;
+      return (int) Math.max(1, Math.min(memoryBudgetKb, kb));
+    }
+
+    @Override public boolean hasNext() {
+      if (next != null) {
+        return true;
+      }
+      if (done) {
+        return false;
+      }
+      if (workerError != null) {
+        done = true;
+        throw workerError;
+      }
+      try {
+        Result result = queue.take();
+        if (result == end) {
+          done = true;
+          if (workerError != null) {
+            throw workerError;
+          }
+          if (feedError != null) {
+            throw feedError;
+          }
+          return false;
+        }
+        next = result;
+        return true;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("interrupted while waiting for a result", e);
+      }
+    }
+
+    @Override public Result next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Result result = next;
+      next = null;
+      return result;
+    }
+
+    @Override public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stop the scan. Files that are being parsed are abandoned and no more results are returned.
+     */
+    @Override public void close() {
+      closed = true;
+      done = true;
+      next = null;
+      feeder.interrupt();
+      executor.shutdownNow();
+      queue.clear();
+    }
+  }
+
+  private Result parse(File file) {
+    Result result = new Result(file);
+    ApkParser parser = null;
+    try {
+      parser = ApkParser.create(file);
+      parser.setPreferredLocale(locale);
+      if ((facets & Facet.META) != 0) {
+        result.apkMeta = parser.getApkMeta();
+      }
+      if ((facets & Facet.MANIFEST) != 0) {
+        result.androidManifest = parser.getAndroidManifest();
+      }
+      if ((facets & Facet.CERTIFICATE) != 0) {
+        result.certificateMeta = parser.getCertificateMeta();
+      }
+      if ((facets & Facet.DEX_CLASSES) != 0) {
+        // the workers already run in parallel, so parse the dex files of one APK in sequence
+        result.dexInfos = parser.getDexInfos();
+      }
+      if ((facets & Facet.LOCALES) != 0) {
+        result.locales = parser.getLocales();
+      }
+    } catch (Exception e) {
+      // Errors are not a problem of the file, they end the scan
+      result.error = e;
+    } finally {
+      if (parser != null) {
+        parser.close();
+      }
+    }
+    return result;
+  }
+
+  private static class NamedThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+    private final String name;
+
+    NamedThreadFactory(String name) {
+      this.name = name;
+    }
+
+    @Override public Thread newThread(Runnable runnable) {
+      String threadName = "ApkBatchScanner-" + name + "-" + count.incrementAndGet();
+      Thread thread = new Thread(runnable, threadName);
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  public static final class Builder {
+
+    private int facets = Facet.META;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = 64;
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+    private Locale locale = Locale.US;
+
+    private Builder() {
+    }
+
+    /**
+     * @param facets
+     *     the {@link Facet}s to extract from each APK. Defaults to {@link Facet#META}.
+     */
+    public Builder facets(int facets) {
+      this.facets = facets;
+      return this;
+    }
+
+    /**
+     * @param threads
+     *     the number of APKs parsed at once. Defaults to the number of available processors.
+     */
+    public Builder threads(int threads) {
+      if (threads < 1) {
+        throw new IllegalArgumentException("threads < 1");
+      }
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * @param queueCapacity
+     *     the number of results that may wait for the consumer before the workers stall.
+     */
+    public Builder queueCapacity(int queueCapacity) {
+      if (queueCapacity < 1) {
+        throw new IllegalArgumentException("queueCapacity < 1");
+      }
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    /**
+     * @param bytes
+     *     the total size of the APKs that may be parsed at once. An APK larger than the budget is
+     *     parsed on its own. Defaults to a quarter of the maximum heap size.
+     */
+    public Builder memoryBudget(long bytes) {
+      if (bytes < 1) {
+        throw new IllegalArgumentException("memoryBudget < 1");
+      }
+      this.memoryBudget = bytes;
+      return this;
+    }
+
+    /**
+     * @param locale
+     *     the preferred locale for resolved resources. Defaults to {@link Locale#US}.
+     */
+    public Builder locale(Locale locale) {
+      this.locale = locale;
+      return this;
+    }
+
+    public ApkBatchScanner build() {
+      return new ApkBatchScanner(this);
+    }
+  }
+
+}
@@ -0,0 +1,830 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser;
+
+import com.jaredrummler.apkparser.ApkBatchScanner.Facet;
+import com.jaredrummler.apkparser.exception.ParserException;
+import com.jaredrummler.apkparser.model.AndroidComponent;
+import com.jaredrummler.apkparser.model.AndroidManifest;
+import com.jaredrummler.apkparser.model.ApkMeta;
+import com.jaredrummler.apkparser.model.CertificateMeta;
+import com.jaredrummler.apkparser.model.DexClass;
+import com.jaredrummler.apkparser.model.DexInfo;
+import com.jaredrummler.apkparser.model.GlEsVersion;
+import com.jaredrummler.apkparser.model.IntentFilter;
+import com.jaredrummler.apkparser.model.Permission;
+import com.jaredrummler.apkparser.model.UseFeature;
+import com.jaredrummler.apkparser.struct.dex.DexHeader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps what was parsed from APKs in a directory, so that scanning the same files again does not
+ * reopen them.
+ *
+ * <p>An APK is identified by its path, size and last modified time; a file that changed is
+ * parsed again. Each APK is stored in a small binary file of its own. Once the files grow past
+ * the maximum size, the least recently used ones are deleted. The directory can be shared by
+ * several caches, e.g. across runs, but not with caches of other facets or locales.</p>
+ *
+ * <pre>
+ * ApkParseCache cache = ApkParseCache.newBuilder(new File("apk-cache"))
+ *     .facets(ApkBatchScanner.Facet.META | ApkBatchScanner.Facet.CERTIFICATE)
+ *     .maxSize(64 * 1024 * 1024)
+ *     .build();
+ * ApkMeta apkMeta = cache.get(apkFile).getApkMeta();
+ * </pre>
+ */
+public class ApkParseCache {
+
+  private static final int MAGIC = 0x41504b43; // "APKC"
+  private static final int VERSION = 2;
+  private static final String SUFFIX = ".apc";
+  private static final String TEMP_PREFIX = "apk";
+  private static final String TEMP_SUFFIX = ".tmp";
+  // temporary files older than this are not written by a live cache anymore
+  private static final long STALE_TEMP_AGE = 10 * 60 * 1000L;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  public static Builder newBuilder(File directory) {
+    return new Builder(directory);
+  }
+
+  private final File directory;
+  private final int facets;
+  private final Locale locale;
+  private final long maxSize;
+  // cache file name -> size, in access order
+  private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+  private long size;
+
+  private ApkParseCache(Builder builder) throws IOException {
+    this.directory = builder.directory;
+    this.facets = builder.facets;
+    this.locale = builder.locale;
+    this.maxSize = builder.maxSize;
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create cache directory " + directory);
+    }
+    loadIndex();
+  }
+
+  private void loadIndex() {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    final long[] lastModified = new long[files.length];
+    Integer[] order = new Integer[files.length];
+    for (int i = 0; i < files.length; i++) {
+      lastModified[i] = files[i].lastModified();
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override public int compare(Integer lhs, Integer rhs) {
+        return lastModified[lhs] < lastModified[rhs] ? -1
+            : lastModified[lhs] == lastModified[rhs] ? 0 : 1;
+      }
+    });
+    long now = System.currentTimeMillis();
+    for (Integer i : order) {
+      File file = files[i];
+      String name = file.getName();
+      if (name.endsWith(SUFFIX)) {
+        index.put(name, file.length());
+        size += file.length();
+      } else if (name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_SUFFIX)
+          && now - lastModified[i] > STALE_TEMP_AGE) {
+        // left behind by a process that died before renaming it, it would never be evicted.
+        // Newer files may still be written by another cache sharing the directory.
+        file.delete();
+      }
+    }
+    trim();
+  }
+
+  /**
+   * Get the parsed facets of an APK, parsing it only if it is not cached yet or has changed.
+   *
+   * @param apk
+   *     the APK file
+   * @return the parsed facets
+   * @throws IOException
+   *     if the APK cannot be parsed. Nothing is cached then.
+   */
+  public Entry get(File apk) throws IOException {
+    Entry entry = getIfPresent(apk);
+    if (entry != null) {
+      return entry;
+    }
+    entry = parse(apk);
+    put(entry);
+    return entry;
+  }
+
+  /**
+   * @param apk
+   *     the APK file
+   * @return the cached facets of the APK, or {@code null} if it is not cached or has changed.
+   */
+  public Entry getIfPresent(File apk) {
+    Key key = new Key(apk, facets, locale);
+    String name = key.fileName();
+    File file = new File(directory, name);
+    synchronized (this) {
+      if (index.get(name) == null) {
+        return null;
+      }
+    }
+    try {
+      Entry entry = read(file, key);
+      if (entry != null) {
+        file.setLastModified(System.currentTimeMillis());
+        return entry;
+      }
+    } catch (IOException e) {
+      // deleted by another cache, or corrupt
+    }
+    remove(name);
+    return null;
+  }
+
+  /**
+   * Delete every cached APK.
+   */
+  public synchronized void clear() {
+    for (String name : index.keySet()) {
+      new File(directory, name).delete();
+    }
+    index.clear();
+    size = 0;
+  }
+
+  /**
+   * @return the total size of the cache files in bytes.
+   */
+  public synchronized long size() {
+    return size;
+  }
+
+  private Entry parse(File apk) throws IOException {
+    Entry entry = new Entry(apk);
+    ApkParser parser = ApkParser.create(apk);
+    try {
+      parser.setPreferredLocale(locale);
+      if ((facets & (Facet.META | Facet.MANIFEST)) != 0) {
+        entry.apkMeta = parser.getApkMeta();
+      }
+      if ((facets & Facet.MANIFEST) != 0) {
+        try {
+          entry.androidManifest = parser.getAndroidManifest();
+        } catch (ParseException e) {
+          throw new ParserException("Error parsing AndroidManifest.xml", e);
+        }
+      }
+      if ((facets & Facet.CERTIFICATE) != 0) {
+        try {
+          entry.certificateMetas = parser.getCertificateMetas();
+        } catch (CertificateException e) {
+          throw new ParserException("Error parsing certificate", e);
+        }
+      }
+      if ((facets & Facet.DEX_CLASSES) != 0) {
+        entry.dexInfos = parser.getDexInfos();
+      }
+      if ((facets & Facet.LOCALES) != 0) {
+        entry.locales = parser.getLocales();
+      }
+    } finally {
+      parser.close();
+    }
+    return entry;
+  }
+
+  private void put(Entry entry) throws IOException {
+    Key key = new Key(entry.file, facets, locale);
+    String name = key.fileName();
+    File temp = File.createTempFile(TEMP_PREFIX, TEMP_SUFFIX, directory);
+    boolean written = false;
+    try {
+      write(temp, key, entry);
+      File file = new File(directory, name);
+      if (!temp.renameTo(file)) {
+        file.delete();
+        if (!temp.renameTo(file)) {
+          return;
+        }
+      }
+      written = true;
+      synchronized (this) {
+        Long old = index.put(name, file.length());
+        size += file.length() - (old == null ? 0 : old);
+        trim();
+      }
+    } finally {
+      if (!written) {
+        temp.delete();
+      }
+    }
+  }
+
+  private synchronized void remove(String name) {
+    Long old = index.remove(name);
+    if (old != null) {
+      size -= old;
+    }
+  }
+
+  private synchronized void trim() {
+    Iterator<Map.Entry<String, Long>> iterator = index.entrySet().iterator();
+    while (size > maxSize && iterator.hasNext()) {
+      Map.Entry<String, Long> eldest = iterator.next();
+      new File(directory, eldest.getKey()).delete();
+      size -= eldest.getValue();
+      iterator.remove();
+    }
+  }
+
+  /**
+   * The cached facets of an APK. Only the facets of the cache are set.
+   */
+  public static class Entry {
+
+    private final File file;
+    ApkMeta apkMeta;
+    AndroidManifest androidManifest;
+    List<CertificateMeta> certificateMetas;
+    List<DexInfo> dexInfos;
+    Set<Locale> locales;
+
+    Entry(File file) {
+      this.file = file;
+    }
+
+    public File getFile() {
+      return file;
+    }
+
+    public ApkMeta getApkMeta() {
+      return apkMeta;
+    }
+
+    public AndroidManifest getAndroidManifest() {
+      return androidManifest;
+    }
+
+    /**
+     * @return the certificate of the first signer, or {@code null} if certificates are not
+     * cached.
+     */
+    public CertificateMeta getCertificateMeta() {
+      return certificateMetas == null ? null : certificateMetas.get(0);
+    }
+
+    /**
+     * @return the certificates of all signers, see {@link ApkParser#getCertificateMetas()}.
+     */
+    public List<CertificateMeta> getCertificateMetas() {
+      return certificateMetas;
+    }
+
+    public List<DexInfo> getDexInfos() {
+      return dexInfos;
+    }
+
+    public Set<Locale> getLocales() {
+      return locales;
+    }
+  }
+
+  private static class Key {
+
+    final String path;
+    final long length;
+    final long lastModified;
+    final int facets;
+    final String locale;
+
+    Key(File apk, int facets, Locale locale) {
+      this.path = apk.getAbsolutePath();
+      this.length = apk.length();
+      this.lastModified = apk.lastModified();
+      this.facets = facets;
+      this.locale = String.valueOf(locale);
+    }
+
+    String fileName() {
+      try {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        byte[] hash = digest.digest(
+            (path + '\0' + facets + '\0' + locale).getBytes(UTF_8));
+        StringBuilder sb = new StringBuilder(hash.length * 2 + SUFFIX.length());
+        for (byte b : hash) {
+          sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.append(SUFFIX).toString();
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  // -------------------------------------------------------------------------------------------
+  // file format
+
+  private static void write(File file, Key key, Entry entry) throws IOException {
+    DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 8192));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      writeString(out, key.path);
+      out.writeLong(key.length);
+      out.writeLong(key.lastModified);
+      out.writeInt(key.facets);
+      writeString(out, key.locale);
+      if ((key.facets & (Facet.META | Facet.MANIFEST)) != 0) {
+        writeApkMeta(out, entry.apkMeta);
+      }
+      if ((key.facets & Facet.MANIFEST) != 0) {
+        writeString(out, entry.androidManifest.xml);
+        List<AndroidComponent> components = entry.androidManifest.getComponents();
+        out.writeInt(components.size());
+        for (AndroidComponent component : components) {
+          writeComponent(out, component);
+        }
+      }
+      if ((key.facets & Facet.CERTIFICATE) != 0) {
+        out.writeInt(entry.certificateMetas.size());
+        for (CertificateMeta certificateMeta : entry.certificateMetas) {
+          writeCertificate(out, certificateMeta);
+        }
+      }
+      if ((key.facets & Facet.DEX_CLASSES) != 0) {
+        out.writeInt(entry.dexInfos.size());
+        for (DexInfo dexInfo : entry.dexInfos) {
+          writeDexInfo(out, dexInfo);
+        }
+      }
+      if ((key.facets & Facet.LOCALES) != 0) {
+        out.writeInt(entry.locales.size());
+        for (Locale locale : entry.locales) {
+          writeString(out, locale.getLanguage());
+          writeString(out, locale.getCountry());
+          writeString(out, locale.getVariant());
+        }
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * @return the entry, or {@code null} if the file was written for another version of the APK.
+   */
+  private static Entry read(File file, Key key) throws IOException {
+    DataInputStream in;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 8192));
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+    try {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION
+          || !key.path.equals(readString(in))
+          || in.readLong() != key.length
+          || in.readLong() != key.lastModified
+          || in.readInt() != key.facets
+          || !key.locale.equals(readString(in))) {
+        return null;
+      }
+      Entry entry = new Entry(new File(key.path));
+      if ((key.facets & (Facet.META | Facet.MANIFEST)) != 0) {
+        entry.apkMeta = readApkMeta(in);
+      }
+      if ((key.facets & Facet.MANIFEST) != 0) {
+        String xml = readString(in);
+        int count = in.readInt();
+        List<AndroidComponent> components = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+          components.add(readComponent(in));
+        }
+        entry.androidManifest = new AndroidManifest(entry.apkMeta, xml, components);
+      }
+      if ((key.facets & Facet.CERTIFICATE) != 0) {
+        int count = in.readInt();
+        List<CertificateMeta> certificateMetas = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+          certificateMetas.add(readCertificate(in));
+        }
+        entry.certificateMetas = Collections.unmodifiableList(certificateMetas);
+      }
+      if ((key.facets & Facet.DEX_CLASSES) != 0) {
+        int count = in.readInt();
+        List<DexInfo> dexInfos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+          dexInfos.add(readDexInfo(in));
+        }
+        entry.dexInfos = dexInfos;
+      }
+      if ((key.facets & Facet.LOCALES) != 0) {
+        int count = in.readInt();
+        Set<Locale> locales = new LinkedHashSet<>(count * 2);
+        for (int i = 0; i < count; i++) {
+          locales.add(new Locale(readString(in), readString(in), readString(in)));
+        }
+        entry.locales = locales;
+      }
+      return entry;
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void writeApkMeta(DataOutputStream out, ApkMeta apkMeta) throws IOException {
+    writeString(out, apkMeta.packageName);
+    writeString(out, apkMeta.label);
+    writeString(out, apkMeta.icon);
+    writeString(out, apkMeta.versionName);
+    out.writeBoolean(apkMeta.versionCode != null);
+    if (apkMeta.versionCode != null) {
+      out.writeLong(apkMeta.versionCode);
+    }
+    writeString(out, apkMeta.installLocation);
+    writeString(out, apkMeta.minSdkVersion);
+    writeString(out, apkMeta.targetSdkVersion);
+    writeString(out, apkMeta.maxSdkVersion);
+    out.writeBoolean(apkMeta.glEsVersion != null);
+    if (apkMeta.glEsVersion != null) {
+      out.writeInt(apkMeta.glEsVersion.major);
+      out.writeInt(apkMeta.glEsVersion.minor);
+      out.writeBoolean(apkMeta.glEsVersion.required);
+    }
+    out.writeBoolean(apkMeta.anyDensity);
+    out.writeBoolean(apkMeta.smallScreens);
+    out.writeBoolean(apkMeta.normalScreens);
+    out.writeBoolean(apkMeta.largeScreens);
+    writeStrings(out, apkMeta.usesPermissions);
+    out.writeInt(apkMeta.usesFeatures.size());
+    for (UseFeature feature : apkMeta.usesFeatures) {
+      writeString(out, feature.name);
+      out.writeBoolean(feature.required);
+    }
+    out.writeInt(apkMeta.permissions.size());
+    for (Permission permission : apkMeta.permissions) {
+      writeString(out, permission.name);
+      writeString(out, permission.label);
+      writeString(out, permission.icon);
+      writeString(out, permission.description);
+      writeString(out, permission.group);
+      writeString(out, permission.protectionLevel);
+    }
+    writeStringMap(out, apkMeta.metaData);
+  }
+
+  private static ApkMeta readApkMeta(DataInputStream in) throws IOException {
+    ApkMeta.Builder builder = ApkMeta.newApkMeta()
+        .packageName(readString(in))
+        .label(readString(in))
+        .icon(readString(in))
+        .versionName(readString(in));
+    if (in.readBoolean()) {
+      builder.versionCode(in.readLong());
+    }
+    builder.installLocation(readString(in))
+        .minSdkVersion(readString(in))
+        .targetSdkVersion(readString(in))
+        .maxSdkVersion(readString(in));
+    if (in.readBoolean()) {
+      builder.glEsVersion(new GlEsVersion(in.readInt(), in.readInt(), in.readBoolean()));
+    }
+    builder.anyDensity(in.readBoolean())
+        .smallScreens(in.readBoolean())
+        .normalScreens(in.readBoolean())
+        .largeScreens(in.readBoolean());
+    for (String permission : readStrings(in)) {
+      builder.addUsesPermission(permission);
+    }
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      builder.addUseFeatures(new UseFeature(readString(in), in.readBoolean()));
+    }
+    count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      builder.addPermission(Permission.newPermission()
+          .name(readString(in))
+          .label(readString(in))
+          .icon(readString(in))
+          .description(readString(in))
+          .group(readString(in))
+          .protectionLevel(readString(in))
+          .build());
+    }
+    for (Map.Entry<String, String> metaData : readStringMap(in).entrySet()) {
+      builder.addMetaData(metaData.getKey(), metaData.getValue());
+    }
+    return builder.build();
+  }
+
+  private static void writeComponent(DataOutputStream out, AndroidComponent component)
+      throws IOException {
+    out.writeInt(component.type);
+    writeString(out, component.name);
+    out.writeBoolean(component.exported);
+    writeString(out, component.process);
+    out.writeInt(component.intentFilters.size());
+    for (IntentFilter intentFilter : component.intentFilters) {
+      writeStrings(out, intentFilter.actions);
+      writeStrings(out, intentFilter.categories);
+      out.writeInt(intentFilter.dataList.size());
+      for (IntentFilter.IntentData data : intentFilter.dataList) {
+        writeString(out, data.scheme);
+        writeString(out, data.host);
+        writeString(out, data.port);
+        writeString(out, data.path);
+        writeString(out, data.pathPattern);
+        writeString(out, data.pathPrefix);
+        writeString(out, data.mimeType);
+        writeString(out, data.type);
+      }
+      writeStringMap(out, intentFilter.attributeValues);
+    }
+  }
+
+  private static AndroidComponent readComponent(DataInputStream in) throws IOException {
+    AndroidComponent.Builder builder = AndroidComponent.newAndroidComponent(in.readInt())
+        .name(readString(in))
+        .exported(in.readBoolean())
+        .process(readString(in));
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      IntentFilter intentFilter = new IntentFilter();
+      intentFilter.actions.addAll(readStrings(in));
+      intentFilter.categories.addAll(readStrings(in));
+      int dataCount = in.readInt();
+      for (int j = 0; j < dataCount; j++) {
+        intentFilter.dataList.add(new IntentFilter.IntentData(readString(in), readString(in),
+            readString(in), readString(in), readString(in), readString(in), readString(in),
+            readString(in)));
+      }
+      intentFilter.attributeValues.putAll(readStringMap(in));
+      builder.addIntentFilter(intentFilter);
+    }
+    return builder.build();
+  }
+
+  private static void writeCertificate(DataOutputStream out, CertificateMeta certificate)
+      throws IOException {
+    writeString(out, certificate.signAlgorithm);
+    writeString(out, certificate.signAlgorithmOID);
+    out.writeLong(certificate.startDate == null ? Long.MIN_VALUE : certificate.startDate.getTime());
+    out.writeLong(certificate.endDate == null ? Long.MIN_VALUE : certificate.endDate.getTime());
+    writeBytes(out, certificate.data);
+    writeString(out, certificate.certBase64Md5);
+    writeString(out, certificate.certMd5);
+  }
+
+  private static CertificateMeta readCertificate(DataInputStream in) throws IOException {
+    CertificateMeta.Builder builder = CertificateMeta.newCertificateMeta()
+        .signAlgorithm(readString(in))
+        .signAlgorithmOID(readString(in));
+    long startDate = in.readLong();
+    long endDate = in.readLong();
+    return builder
+        .startDate(startDate == Long.MIN_VALUE ? null : new Date(startDate))
+        .endDate(endDate == Long.MIN_VALUE ? null : new Date(endDate))
+        .data(readBytes(in))
+        .certBase64Md5(readString(in))
+        .certMd5(readString(in))
+        .build();
+  }
+
+  private static void writeDexInfo(DataOutputStream out, DexInfo dexInfo) throws IOException {
+    DexHeader header = dexInfo.header;
+    out.writeInt(header.version);
+    writeBytes(out, header.signature);
+    out.writeLong(header.fileSize);
+    out.writeLong(header.headerSize);
+    out.writeLong(header.linkSize);
+    out.writeLong(header.linkOff);
+    out.writeLong(header.mapOff);
+    out.writeInt(header.stringIdsSize);
+    out.writeLong(header.stringIdsOff);
+    out.writeInt(header.typeIdsSize);
+    out.writeLong(header.typeIdsOff);
+    out.writeInt(header.protoIdsSize);
+    out.writeLong(header.protoIdsOff);
+    out.writeInt(header.fieldIdsSize);
+    out.writeLong(header.fieldIdsOff);
+    out.writeInt(header.methodIdsSize);
+    out.writeLong(header.methodIdsOff);
+    out.writeInt(header.classDefsSize);
+    out.writeLong(header.classDefsOff);
+    out.writeInt(header.dataSize);
+    out.writeLong(header.dataOff);
+    out.writeInt(dexInfo.classes.length);
+    for (DexClass dexClass : dexInfo.classes) {
+      writeString(out, dexClass.classType);
+      writeString(out, dexClass.superClass);
+      out.writeInt(dexClass.accessFlags);
+    }
+  }
+
+  private static DexInfo readDexInfo(DataInputStream in) throws IOException {
+    DexHeader header = DexHeader.newDexHeader()
+        .version(in.readInt())
+        .signature(readBytes(in))
+        .fileSize(in.readLong())
+        .headerSize(in.readLong())
+        .linkSize(in.readLong())
+        .linkOff(in.readLong())
+        .mapOff(in.readLong())
+        .stringIdsSize(in.readInt())
+        .stringIdsOff(in.readLong())
+        .typeIdsSize(in.readInt())
+        .typeIdsOff(in.readLong())
+        .protoIdsSize(in.readInt())
+        .protoIdsOff(in.readLong())
+        .fieldIdsSize(in.readInt())
+        .fieldIdsOff(in.readLong())
+        .methodIdsSize(in.readInt())
+        .methodIdsOff(in.readLong())
+        .classDefsSize(in.readInt())
+        .classDefsOff(in.readLong())
+        .dataSize(in.readInt())
+        .dataOff(in.readLong())
+        .build();
+    DexClass[] classes = new DexClass[in.readInt()];
+    for (int i = 0; i < classes.length; i++) {
+      classes[i] = DexClass.newDexClass()
+          .classType(readString(in))
+          .superClass(readString(in))
+          .accessFlags(in.readInt())
+          .build();
+    }
+    return new DexInfo(classes, header);
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    writeBytes(out, s == null ? null : s.getBytes(UTF_8));
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = readBytes(in);
+    return bytes == null ? null : new String(bytes, UTF_8);
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+    if (bytes == null) {
+      out.writeInt(-1);
+    } else {
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  private static void writeStrings(DataOutputStream out, List<String> strings)
+      throws IOException {
+    out.writeInt(strings.size());
+    for (String s : strings) {
+      writeString(out, s);
+    }
+  }
+
+  private static List<String> readStrings(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    List<String> strings = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      strings.add(readString(in));
+    }
+    return strings;
+  }
+
+  private static void writeStringMap(DataOutputStream out, Map<String, String> map)
+      throws IOException {
+    out.writeInt(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      writeString(out, entry.getKey());
+      writeString(out, entry.getValue());
+    }
+  }
+
+  private static Map<String, String> readStringMap(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    Map<String, String> map = new LinkedHashMap<>(count * 2);
+    for (int i = 0; i < count; i++) {
+      map.put(readString(in), readString(in));
+    }
+    return map;
+  }
+
+  public static final class Builder {
+
+    private final File directory;
+    private int facets = Facet.META;
+    private Locale locale = Locale.US;
+    private long maxSize = 64L * 1024 * 1024;
+
+    private Builder(File directory) {
+      this.directory = directory;
+    }
+
+    /**
+     * @param facets
+     *     the parts of each APK to cache, from {@link ApkBatchScanner.Facet}. Defaults to
+     *     {@link ApkBatchScanner.Facet#META}.
+     */
+    public Builder facets(int facets) {
+      this.facets = facets;
+      return this;
+    }
+
+    /**
+     * @param locale
+     *     the locale to resolve labels with. Defaults to {@link Locale#US}.
+     */
+    public Builder locale(Locale locale) {
+      this.locale = locale;
+      return this;
+    }
+
+    /**
+     * @param maxSize
+     *     the total size of the cache files in bytes, beyond which the least recently used are
+     *     deleted. Defaults to 64MB.
+     */
+    public Builder maxSize(long maxSize) {
+      this.maxSize = maxSize;
+      return this;
+    }
+
+    /**
+     * @throws IOException
+     *     if the cache directory cannot be created
+     */
+    public ApkParseCache build() throws IOException {
+      return new ApkParseCache(this);
+    }
+  }
+}
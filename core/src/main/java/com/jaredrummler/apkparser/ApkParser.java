@@ -0,0 +1,858 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser;
+
+import com.jaredrummler.apkparser.exception.ParserException;
+import com.jaredrummler.apkparser.model.AndroidComponent;
+import com.jaredrummler.apkparser.model.AndroidManifest;
+import com.jaredrummler.apkparser.model.ApkMeta;
+import com.jaredrummler.apkparser.model.CertificateMeta;
+import com.jaredrummler.apkparser.model.DexClass;
+import com.jaredrummler.apkparser.model.DexInfo;
+import com.jaredrummler.apkparser.model.DexSummary;
+import com.jaredrummler.apkparser.model.Icon;
+import com.jaredrummler.apkparser.parser.AndroidComponentTranslator;
+import com.jaredrummler.apkparser.parser.ApkMetaTranslator;
+import com.jaredrummler.apkparser.parser.ApkSigningBlockVerifier;
+import com.jaredrummler.apkparser.parser.BinaryXmlParser;
+import com.jaredrummler.apkparser.parser.CertificateParser;
+import com.jaredrummler.apkparser.parser.CompositeXmlStreamer;
+import com.jaredrummler.apkparser.parser.DexParser;
+import com.jaredrummler.apkparser.parser.JarSignatureVerifier;
+import com.jaredrummler.apkparser.parser.ResourceTableParser;
+import com.jaredrummler.apkparser.parser.ResourceTableProvider;
+import com.jaredrummler.apkparser.parser.XmlStreamer;
+import com.jaredrummler.apkparser.parser.XmlTranslator;
+import com.jaredrummler.apkparser.struct.AndroidConstants;
+import com.jaredrummler.apkparser.struct.ChunkType;
+import com.jaredrummler.apkparser.struct.dex.DexHeader;
+import com.jaredrummler.apkparser.struct.resource.ResourceTable;
+import com.jaredrummler.apkparser.utils.ParseUtils;
+import com.jaredrummler.apkparser.utils.Utils;
+import com.jaredrummler.apkparser.utils.ZipArchive;
+import com.jaredrummler.apkparser.utils.ZipEntryReader;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.security.cert.CertificateException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+public class ApkParser implements Closeable {
+
+  private static final Locale DEFAULT_LOCALE = Locale.US;
+
+  public static ApkParser create(String path) {
+    return new ApkParser(new File(path));
+  }
+
+  public static ApkParser create(File file) {
+    return new ApkParser(file);
+  }
+
+  private List<DexInfo> dexInfos; // multi-dex
+  private DexInfo dex;
+  private DexSummary dexSummary;
+  private ResourceTable resourceTable;
+  private AndroidManifest androidManifest;
+  private String manifestXml;
+  private List<AndroidComponent> manifestComponents;
+  private ApkMeta apkMeta;
+  private Set<Locale> locales;
+  private List<CertificateMeta> certificates;
+  private final ZipArchive archive;
+  private final ZipEntryReader entryReader;
+  private ApkSigningBlockVerifier signingBlockVerifier;
+  private Locale preferredLocale = DEFAULT_LOCALE;
+  private boolean resolveReferences = true;
+  // resolves references against another table, e.g. the merged table of a split APK set
+  private ResourceTableProvider referenceTableProvider;
+  // resources.arsc is only parsed once a binary xml file refers to a resource
+  private final ResourceTableProvider resourceTableProvider = new ResourceTableProvider() {
+    @Override public ResourceTable getResourceTable() throws IOException {
+      ResourceTableProvider provider = referenceTableProvider;
+      if (provider != null) {
+        return provider.getResourceTable();
+      }
+      return ApkParser.this.getResourceTable();
+    }
+  };
+
+  private ApkParser(File file) throws InvalidApkException {
+    try {
+      archive = new ZipArchive(file);
+      entryReader = new ZipEntryReader(archive);
+    } catch (IOException e) {
+      throw new InvalidApkException(String.format("Invalid APK: %s", file.getAbsolutePath()), e);
+    }
+  }
+
+  /**
+   * @return decoded AndroidManifest.xml
+   */
+  public String getManifestXml() throws IOException {
+    if (manifestXml == null) {
+      parseManifestXml();
+    }
+    return manifestXml;
+  }
+
+  /**
+   * @return Object holding information about the AndroidManifest and it's declared activities,
+   * services, receivers, intent-filters, etc.
+   * @throws IOException
+   *     if parsing the AndroidManifest failed.
+   */
+  public AndroidManifest getAndroidManifest() throws IOException, ParseException {
+    if (androidManifest == null) {
+      parseApkMeta();
+      androidManifest = new AndroidManifest(apkMeta, manifestXml, manifestComponents);
+    }
+    return androidManifest;
+  }
+
+  /**
+   * @return decoded AndroidManifest.xml
+   */
+  public ApkMeta getApkMeta() throws IOException {
+    if (apkMeta == null) {
+      parseApkMeta();
+    }
+    return apkMeta;
+  }
+
+  /**
+   * Read selected attribute values from AndroidManifest.xml. Only as much of the manifest is
+   * parsed as the query needs, and resources.arsc is only parsed if a selected value is a
+   * resource reference.
+   *
+   * @param query
+   *     the attributes to select
+   * @return the selected values
+   * @throws IOException
+   *     if the manifest cannot be parsed
+   */
+  public ManifestQuery.Result queryManifest(ManifestQuery query) throws IOException {
+    ZipArchive.Entry entry = archive.getEntry(AndroidConstants.MANIFEST_FILE);
+    if (entry == null) {
+      throw new ParserException("manifest xml not exists");
+    }
+    return query.run(entryReader.read(entry), this, preferredLocale);
+  }
+
+  /**
+   * get locales supported from resource file
+   *
+   * @return decoded AndroidManifest.xml
+   */
+  public Set<Locale> getLocales() throws IOException {
+    if (locales == null) {
+      parseResourceTable();
+    }
+    return locales;
+  }
+
+  /**
+   * Get the parsed resources.arsc of the APK. The table is never modified after parsing, so it can
+   * be shared with other threads, e.g. to decode xml files with {@link BinaryXmlParser}
+   * concurrently.
+   *
+   * @return the resource table. Empty if the APK has no resources.arsc.
+   * @throws IOException
+   *     if parsing the resource table failed.
+   */
+  public ResourceTable getResourceTable() throws IOException {
+    if (resourceTable == null) {
+      parseResourceTable();
+    }
+    return resourceTable;
+  }
+
+  /**
+   * Resolve a resource reference against the resource table, using the preferred locale. Use with
+   * {@link #setResolveReferences(boolean) setResolveReferences(false)} to resolve only the
+   * references that are needed.
+   *
+   * @param resourceId
+   *     the resource id, e.g. 0x7f020000
+   * @return the resource value, or "resourceId:0x7f020000" if the resource is not found
+   * @throws IOException
+   *     if parsing the resource table failed.
+   */
+  public String resolveResource(long resourceId) throws IOException {
+    return ParseUtils.getResourceById(resourceId, getReferenceTable(), preferredLocale);
+  }
+
+  /**
+   * @return the table references are resolved against, see
+   * {@link #setResourceTableProvider(ResourceTableProvider)}.
+   */
+  ResourceTable getReferenceTable() throws IOException {
+    return resourceTableProvider.getResourceTable();
+  }
+
+  public CertificateMeta getCertificateMeta() throws IOException, CertificateException {
+    return getCertificateMetas().get(0);
+  }
+
+  /**
+   * Get the certificates of all signers of the APK, one per signer. The certificates are read
+   * from the JAR signature blocks (META-INF/*.RSA, *.DSA or *.EC) or, if the APK has no JAR
+   * signature, from the APK Signing Block.
+   *
+   * @return the certificates, never empty
+   * @throws ParserException
+   *     if the APK is not signed.
+   */
+  public List<CertificateMeta> getCertificateMetas() throws IOException, CertificateException {
+    if (certificates == null) {
+      parseCertificates();
+    }
+    return certificates;
+  }
+
+  private void parseCertificates() throws IOException, CertificateException {
+    List<CertificateMeta> certificates = new ArrayList<>();
+    for (String name : getSignatureBlockNames()) {
+      ZipArchive.Entry entry = archive.getEntry(name);
+      if (entry == null) {
+        continue;
+      }
+      InputStream in = archive.getInputStream(entry);
+      try {
+        certificates.add(new CertificateParser(in).parse());
+      } finally {
+        in.close();
+      }
+    }
+    if (certificates.isEmpty()) {
+      // APKs signed with the v2/v3 scheme only have no JAR signature
+      for (List<byte[]> chain : getSigningBlockVerifier().getCertificates()) {
+        if (!chain.isEmpty()) {
+          certificates.add(new CertificateParser(new ByteArrayInputStream(chain.get(0))).parse());
+        }
+      }
+    }
+    if (certificates.isEmpty()) {
+      throw new ParserException("ApkParser certificate not found");
+    }
+    this.certificates = Collections.unmodifiableList(certificates);
+  }
+
+  /**
+   * @return the names of the JAR signature blocks, found by a prefix scan of the central
+   * directory rather than by enumerating every entry.
+   */
+  private List<String> getSignatureBlockNames() {
+    List<String> names = archive.getEntryNames(AndroidConstants.META_PREFIX);
+    List<String> blocks = new ArrayList<>();
+    for (String name : names) {
+      // signature blocks are directly in META-INF/
+      if (name.indexOf('/', AndroidConstants.META_PREFIX.length()) == -1
+          && (endsWithIgnoreCase(name, ".RSA") || endsWithIgnoreCase(name, ".DSA")
+          || endsWithIgnoreCase(name, ".EC"))) {
+        blocks.add(name);
+      }
+    }
+    return blocks;
+  }
+
+  private static boolean endsWithIgnoreCase(String s, String suffix) {
+    return s.regionMatches(true, s.length() - suffix.length(), suffix, 0, suffix.length());
+  }
+
+  private void parseApkMeta() throws IOException {
+    if (manifestXml == null) {
+      parseManifestXml();
+    }
+  }
+
+  private void parseManifestXml() throws IOException {
+    XmlTranslator xmlTranslator = new XmlTranslator();
+    ApkMetaTranslator translator = new ApkMetaTranslator();
+    AndroidComponentTranslator componentTranslator = new AndroidComponentTranslator();
+    XmlStreamer xmlStreamer =
+        new CompositeXmlStreamer(xmlTranslator, translator, componentTranslator);
+    transBinaryXml(AndroidConstants.MANIFEST_FILE, xmlStreamer);
+    manifestXml = xmlTranslator.getXml();
+    if (manifestXml == null) {
+      throw new ParserException("manifest xml not exists");
+    }
+    apkMeta = translator.getApkMeta();
+    manifestComponents = componentTranslator.getComponents();
+  }
+
+  /**
+   * trans binary xml file to text xml file.
+   *
+   * @param path
+   *     the xml file path in apk file
+   * @return the text. null if file not exists
+   * @throws IOException
+   */
+  public String transBinaryXml(String path) throws IOException {
+    ZipArchive.Entry entry = archive.getEntry(path);
+    if (entry == null) {
+      return null;
+    }
+    try {
+      XmlTranslator xmlTranslator = new XmlTranslator();
+      transBinaryXml(path, xmlTranslator);
+      return xmlTranslator.getXml();
+    } catch (ParserException e) {
+      if (e.getCause() != null) {
+        // binary xml, but the resource table could not be loaded
+        throw e;
+      }
+      // plain text file
+      InputStream in = archive.getInputStream(entry);
+      ByteArrayOutputStream baos = new ByteArrayOutputStream(8192);
+      byte[] buffer = new byte[8192];
+      int length;
+      while ((length = in.read(buffer)) != -1) {
+        baos.write(buffer, 0, length);
+      }
+      in.close();
+      return baos.toString("UTF-8");
+    }
+  }
+
+  /**
+   * Translate a binary xml file to text, writing it to {@code out} as it is decoded. Plain text
+   * files are copied as is. The writer is neither flushed nor closed.
+   *
+   * @param path
+   *     the xml file path in apk file
+   * @param out
+   *     the writer to write the text to. Wrap unbuffered writers in a {@link BufferedWriter}.
+   * @return {@code false} if the file does not exist
+   * @throws IOException
+   *     if the file cannot be parsed or {@code out} cannot be written
+   */
+  public boolean transBinaryXml(String path, Writer out) throws IOException {
+    ZipArchive.Entry entry = archive.getEntry(path);
+    if (entry == null) {
+      return false;
+    }
+    ByteBuffer buffer = entryReader.read(entry);
+    if (!isBinaryXml(buffer)) {
+      // plain text file, decode the buffer that was already read
+      CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      CharBuffer chars = CharBuffer.allocate(8192);
+      boolean flushed = false;
+      while (true) {
+        CoderResult result = flushed ? decoder.flush(chars) : decoder.decode(buffer, chars, true);
+        out.write(chars.array(), 0, chars.position());
+        chars.clear();
+        if (result.isUnderflow()) {
+          if (flushed) {
+            break;
+          }
+          flushed = true;
+        }
+      }
+      return true;
+    }
+    XmlTranslator xmlTranslator = new XmlTranslator(out);
+    transBinaryXml(buffer, xmlTranslator);
+    if (xmlTranslator.getIOException() != null) {
+      throw xmlTranslator.getIOException();
+    }
+    return true;
+  }
+
+  /**
+   * Translate a binary xml file to UTF-8 text, writing it to {@code out} as it is decoded. The
+   * stream is flushed but not closed.
+   *
+   * @see #transBinaryXml(String, Writer)
+   */
+  public boolean transBinaryXml(String path, OutputStream out) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+    boolean found = transBinaryXml(path, writer);
+    writer.flush();
+    return found;
+  }
+
+  /**
+   * get the apk icon file as bytes.
+   *
+   * @return the apk icon data,null if icon not found
+   * @throws IOException
+   */
+  public Icon getIconFile() throws IOException {
+    ApkMeta apkMeta = getApkMeta();
+    if (apkMeta.icon == null) {
+      return null;
+    }
+    return new Icon(apkMeta.icon, getFileData(apkMeta.icon));
+  }
+
+  private void transBinaryXml(String path, XmlStreamer xmlStreamer) throws IOException {
+    ZipArchive.Entry entry = archive.getEntry(path);
+    if (entry == null) {
+      return;
+    }
+    transBinaryXml(entryReader.read(entry), xmlStreamer);
+  }
+
+  private void transBinaryXml(ByteBuffer buffer, XmlStreamer xmlStreamer) throws IOException {
+    BinaryXmlParser binaryXmlParser = new BinaryXmlParser(buffer, null);
+    binaryXmlParser.setResourceTableProvider(resourceTableProvider);
+    binaryXmlParser.setResolveReferences(resolveReferences);
+    binaryXmlParser.setLocale(preferredLocale);
+    binaryXmlParser.setXmlStreamer(xmlStreamer);
+    binaryXmlParser.parse();
+  }
+
+  private static boolean isBinaryXml(ByteBuffer buffer) {
+    int pos = buffer.position();
+    return buffer.remaining() >= 2
+        && ((buffer.get(pos) & 0xff) | (buffer.get(pos + 1) & 0xff) << 8) == ChunkType.XML;
+  }
+
+  /**
+   * Return all classes.dex files. If an app is using multi-dex there will be more than one dex
+   * file.
+   *
+   * @return list of information about dex files.
+   * @throws IOException
+   *     if an error occurs while parsing the DEX file(s).
+   */
+  public List<DexInfo> getDexInfos() throws IOException {
+    if (dexInfos == null) {
+      parseDexFiles();
+    }
+    return dexInfos;
+  }
+
+  /**
+   * Return all classes.dex files, parsing them concurrently. The dex files of an app are
+   * independent, so each one is inflated and parsed as a separate task.
+   *
+   * @param executor
+   *     the executor to run the parse tasks on. If {@code null}, a thread pool sized to the number
+   *     of available processors is used for this call.
+   * @return list of information about dex files, in dex order (classes.dex, classes2.dex, ...).
+   * @throws IOException
+   *     if an error occurs while parsing the DEX file(s).
+   */
+  public List<DexInfo> getDexInfos(Executor executor) throws IOException {
+    if (dexInfos == null) {
+      parseDexFiles(executor);
+    }
+    return dexInfos;
+  }
+
+  /**
+   * Get the string, type, field, method and class counts of all dex files. Only the header of
+   * each dex file is read: DEFLATED dex files are inflated up to the end of the header, and no
+   * strings or class definitions are decoded.
+   *
+   * @return the dex headers and their total counts.
+   * @throws IOException
+   *     if an error occurs while reading the DEX file(s).
+   */
+  public DexSummary getDexSummary() throws IOException {
+    if (dexSummary == null) {
+      List<DexHeader> headers = new ArrayList<>();
+      if (dexInfos != null) {
+        for (DexInfo dexInfo : dexInfos) {
+          headers.add(dexInfo.header);
+        }
+      } else {
+        for (ZipArchive.Entry entry : getDexEntries()) {
+          DexHeader header =
+              new DexParser(entryReader.readHead(entry, DexHeader.HEADER_SIZE)).parseHeader();
+          if (header == null) {
+            throw new ParserException(entry.getName() + " is not a dex file");
+          }
+          headers.add(header);
+        }
+      }
+      dexSummary = new DexSummary(headers);
+    }
+    return dexSummary;
+  }
+
+  /**
+   * Get info about classes.dex. Use {@link #getDexInfos()} for apps using multidex.
+   *
+   * @return info about classes.dex
+   * @throws IOException if an error occurs while parsing classes.dex
+   */
+  public DexInfo getDexInfo() throws IOException {
+    if (dex == null) {
+      dex = parseDexFile();
+    }
+    return dex;
+  }
+
+  /**
+   * Get class info from DEX file. Currently only class name
+   */
+  @Deprecated
+  public DexClass[] getDexClasses() throws IOException {
+    if (dex == null) {
+      dex = parseDexFile();
+    }
+    return dex.classes;
+  }
+
+  @Deprecated
+  public DexHeader getDexHeader() throws IOException {
+    if (dex == null) {
+      dex = parseDexFile();
+    }
+    return dex.header;
+  }
+
+  private void parseDexFiles() throws IOException {
+    List<ZipArchive.Entry> entries = getDexEntries();
+    List<DexInfo> infos = new ArrayList<>(entries.size());
+    infos.add(getDexInfo());
+    for (int i = 1; i < entries.size(); i++) {
+      infos.add(parseDexFile(entries.get(i)));
+    }
+    dexInfos = infos;
+  }
+
+  private void parseDexFiles(Executor executor) throws IOException {
+    List<ZipArchive.Entry> entries = getDexEntries();
+    ExecutorService ownExecutor = null;
+    if (executor == null) {
+      int threads = Math.min(entries.size(), Runtime.getRuntime().availableProcessors());
+      ownExecutor = Executors.newFixedThreadPool(threads);
+      executor = ownExecutor;
+    }
+    List<FutureTask<DexInfo>> tasks = new ArrayList<>(entries.size());
+    try {
+      for (final ZipArchive.Entry entry : entries) {
+        FutureTask<DexInfo> task = new FutureTask<>(new Callable<DexInfo>() {
+
+          @Override public DexInfo call() throws IOException {
+            return parseDexFile(entry);
+          }
+        });
+        tasks.add(task);
+        executor.execute(task);
+      }
+      List<DexInfo> infos = new ArrayList<>(entries.size());
+      for (FutureTask<DexInfo> task : tasks) {
+        infos.add(getResult(task));
+      }
+      if (dex == null) {
+        dex = infos.get(0);
+      }
+      dexInfos = infos;
+    } finally {
+      for (FutureTask<DexInfo> task : tasks) {
+        task.cancel(false);
+      }
+      if (ownExecutor != null) {
+        ownExecutor.shutdown();
+      }
+    }
+  }
+
+  private static <T> T getResult(FutureTask<T> task) throws IOException {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while parsing dex files");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new ParserException("Error parsing dex file", cause);
+    }
+  }
+
+  /**
+   * Get classes.dex followed by classes2.dex, classes3.dex, ... until the first missing index.
+   */
+  private List<ZipArchive.Entry> getDexEntries() throws ParserException {
+    List<ZipArchive.Entry> entries = new ArrayList<>();
+    ZipArchive.Entry entry = archive.getEntry(AndroidConstants.DEX_FILE);
+    if (entry == null) {
+      throw new ParserException(AndroidConstants.DEX_FILE + " not found");
+    }
+    while (entry != null) {
+      entries.add(entry);
+      entry = archive.getEntry("classes" + (entries.size() + 1) + ".dex");
+    }
+    return entries;
+  }
+
+  private DexInfo parseDexFile() throws IOException {
+    ZipArchive.Entry entry = archive.getEntry(AndroidConstants.DEX_FILE);
+    if (entry == null) {
+      throw new ParserException(AndroidConstants.DEX_FILE + " not found");
+    }
+    return parseDexFile(entry);
+  }
+
+  private DexInfo parseDexFile(ZipArchive.Entry entry) throws IOException {
+    ByteBuffer buffer = entryReader.read(entry);
+    DexParser dexParser = new DexParser(buffer);
+    return dexParser.parse();
+  }
+
+  /**
+   * read file in apk into bytes
+   */
+  public byte[] getFileData(String path) throws IOException {
+    ZipArchive.Entry entry = archive.getEntry(path);
+    if (entry == null) {
+      return null;
+    }
+    return entryReader.readBytes(entry);
+  }
+
+  /**
+   * Verify the signature of the APK. If the APK is signed with APK Signature Scheme v3 or v2,
+   * the signature in the APK Signing Block is verified and the JAR signature is ignored, as
+   * Android does. Otherwise every entry signed by the JAR signature is read once and its digest
+   * checked against META-INF/MANIFEST.MF; verification stops at the first entry that does not
+   * match.
+   *
+   * @return One of:
+   * {@link ApkSignStatus#SIGNED},
+   * {@link ApkSignStatus#NOT_SIGNED},
+   * {@link ApkSignStatus#INCORRECT}
+   * @throws IOException
+   *     if reading the APK file failed.
+   */
+  public int verifyApk() throws IOException {
+    int status = getSigningBlockVerifier().verify(null);
+    if (status != ApkSignStatus.NOT_SIGNED) {
+      return status;
+    }
+    return new JarSignatureVerifier(archive).verify(null);
+  }
+
+  /**
+   * Verify the signature of the APK like {@link #verifyApk()}, computing the digests
+   * concurrently: the 1MB chunks of a v2/v3 signed APK, or the entries of a JAR signed APK.
+   *
+   * @param executor
+   *     the executor to compute the digests on. If {@code null}, a thread pool sized to the number
+   *     of available processors is used for this call.
+   * @return One of:
+   * {@link ApkSignStatus#SIGNED},
+   * {@link ApkSignStatus#NOT_SIGNED},
+   * {@link ApkSignStatus#INCORRECT}
+   * @throws IOException
+   *     if reading the APK file failed.
+   * @see #verifyApk()
+   */
+  public int verifyApk(Executor executor) throws IOException {
+    ExecutorService ownExecutor = null;
+    if (executor == null) {
+      ownExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+      executor = ownExecutor;
+    }
+    try {
+      int status = getSigningBlockVerifier().verify(executor);
+      if (status != ApkSignStatus.NOT_SIGNED) {
+        return status;
+      }
+      return new JarSignatureVerifier(archive).verify(executor);
+    } finally {
+      if (ownExecutor != null) {
+        ownExecutor.shutdownNow();
+      }
+    }
+  }
+
+  private synchronized ApkSigningBlockVerifier getSigningBlockVerifier() {
+    if (signingBlockVerifier == null) {
+      signingBlockVerifier = new ApkSigningBlockVerifier(archive.getChannel());
+    }
+    return signingBlockVerifier;
+  }
+
+  private void parseResourceTable() throws IOException {
+    ZipArchive.Entry entry = archive.getEntry(AndroidConstants.RESOURCE_FILE);
+    if (entry == null) {
+      // if no resource entry has been found, we assume it is not needed by this APK
+      resourceTable = new ResourceTable();
+      locales = Collections.emptySet();
+      return;
+    }
+    resourceTable = new ResourceTable();
+    locales = Collections.emptySet();
+    ByteBuffer buffer = entryReader.read(entry);
+    ResourceTableParser resourceTableParser = new ResourceTableParser(buffer);
+    resourceTableParser.parse();
+    resourceTable = resourceTableParser.getResourceTable();
+    locales = resourceTableParser.getLocales();
+  }
+
+  @Override public void close() {
+    resourceTable = null;
+    certificates = null;
+    try {
+      archive.close();
+    } catch (Exception ignored) {
+    }
+  }
+
+  public Locale getPreferredLocale() {
+    return preferredLocale;
+  }
+
+  /**
+   * The locale preferred. Will cause getManifestXml / getApkMeta to return different values.
+   * The default value is from os default locale setting.
+   */
+  public void setPreferredLocale(Locale locale) {
+    if (!Utils.equals(preferredLocale, locale)) {
+      preferredLocale = locale;
+      manifestXml = null;
+      apkMeta = null;
+    }
+  }
+
+  public boolean isResolveReferences() {
+    return resolveReferences;
+  }
+
+  /**
+   * Whether resource references in binary xml files are resolved, e.g. the application label.
+   * When {@code false} they are left as "resourceId:0x7f020000" and resources.arsc is never
+   * parsed; see {@link #resolveResource(long)}. Defaults to {@code true}. Will cause
+   * getManifestXml / getApkMeta to return different values.
+   */
+  public void setResolveReferences(boolean resolveReferences) {
+    if (this.resolveReferences != resolveReferences) {
+      this.resolveReferences = resolveReferences;
+      manifestXml = null;
+      apkMeta = null;
+    }
+  }
+
+  /**
+   * @see ZipEntryReader#getSpillThreshold()
+   */
+  public long getSpillThreshold() {
+    return entryReader.getSpillThreshold();
+  }
+
+  /**
+   * Set the size above which DEFLATED entries, such as a large classes.dex or resources.arsc, are
+   * inflated into a memory mapped temporary file instead of the heap. This caps the heap used to
+   * parse a single APK. Defaults to -1, never.
+   *
+   * @param bytes
+   *     the uncompressed entry size in bytes, or -1 to always inflate into the heap
+   * @see #setSpillDirectory(File)
+   */
+  public void setSpillThreshold(long bytes) {
+    entryReader.setSpillThreshold(bytes);
+  }
+
+  public File getSpillDirectory() {
+    return entryReader.getSpillDirectory();
+  }
+
+  /**
+   * @param directory
+   *     the directory for the temporary files of large entries, or {@code null} for the default
+   *     temporary directory
+   * @see #setSpillThreshold(long)
+   */
+  public void setSpillDirectory(File directory) {
+    entryReader.setSpillDirectory(directory);
+  }
+
+  /**
+   * Resolve resource references against the table of {@code provider} instead of this APK's
+   * resources.arsc, e.g. the merged table of a split install (see {@link ApkSetParser}). Will
+   * cause getManifestXml / getApkMeta to return different values.
+   *
+   * @param provider
+   *     the table to resolve references against, or {@code null} to use this APK's table
+   */
+  public void setResourceTableProvider(ResourceTableProvider provider) {
+    if (referenceTableProvider != provider) {
+      referenceTableProvider = provider;
+      manifestXml = null;
+      apkMeta = null;
+    }
+  }
+
+  public static final class ApkSignStatus {
+
+    public static final int NOT_SIGNED = 0x00;
+    public static final int INCORRECT = 0x01;
+    public static final int SIGNED = 0x02;
+  }
+
+  public static class InvalidApkException extends RuntimeException {
+
+    public InvalidApkException(String detailMessage, Throwable throwable) {
+      super(detailMessage, throwable);
+    }
+  }
+
+}
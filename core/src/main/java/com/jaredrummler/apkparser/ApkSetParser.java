@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser;
+
+import com.jaredrummler.apkparser.exception.ParserException;
+import com.jaredrummler.apkparser.model.AndroidManifest;
+import com.jaredrummler.apkparser.model.ApkMeta;
+import com.jaredrummler.apkparser.parser.ResourceTableProvider;
+import com.jaredrummler.apkparser.struct.resource.ResourceTable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Parses the APKs of a split install: base.apk and its splits, e.g. the config.* splits that hold
+ * the resources of a density or language.
+ *
+ * <p>The resources.arsc tables of all APKs are parsed concurrently and merged into one
+ * {@link ResourceTable}, so that references in the base manifest resolve to resources in any
+ * split. Meta data is read from the base APK.</p>
+ *
+ * <pre>
+ * ApkSetParser parser = ApkSetParser.create(new File("base.apk"), splits);
+ * try {
+ *   ApkMeta apkMeta = parser.getApkMeta();
+ * } finally {
+ *   parser.close();
+ * }
+ * </pre>
+ */
+public class ApkSetParser implements Closeable {
+
+  /**
+   * @param base
+   *     the base APK
+   * @param splits
+   *     the split APKs, may be empty
+   * @return the parser
+   * @throws ApkParser.InvalidApkException
+   *     if an APK cannot be opened
+   */
+  public static ApkSetParser create(File base, Collection<File> splits) {
+    List<ApkParser> parsers = new ArrayList<>(splits.size() + 1);
+    boolean opened = false;
+    try {
+      parsers.add(ApkParser.create(base));
+      for (File split : splits) {
+        parsers.add(ApkParser.create(split));
+      }
+      opened = true;
+    } finally {
+      if (!opened) {
+        for (ApkParser parser : parsers) {
+          parser.close();
+        }
+      }
+    }
+    return new ApkSetParser(parsers);
+  }
+
+  private final List<ApkParser> parsers;
+  private Executor executor;
+  private ResourceTable resourceTable;
+  private Set<Locale> locales;
+
+  private ApkSetParser(List<ApkParser> parsers) {
+    this.parsers = Collections.unmodifiableList(parsers);
+    getBase().setResourceTableProvider(new ResourceTableProvider() {
+      @Override public ResourceTable getResourceTable() throws IOException {
+        return ApkSetParser.this.getResourceTable();
+      }
+    });
+  }
+
+  /**
+   * @return the parser of the base APK. It resolves references against the merged resource
+   * table.
+   */
+  public ApkParser getBase() {
+    return parsers.get(0);
+  }
+
+  /**
+   * @return the parsers of the split APKs, in the order they were given.
+   */
+  public List<ApkParser> getSplits() {
+    return parsers.subList(1, parsers.size());
+  }
+
+  /**
+   * @return the meta data of the base APK, with references resolved against all APKs.
+   * @throws IOException
+   *     if parsing failed.
+   */
+  public ApkMeta getApkMeta() throws IOException {
+    return getBase().getApkMeta();
+  }
+
+  /**
+   * @return the decoded AndroidManifest.xml of the base APK.
+   * @throws IOException
+   *     if parsing failed.
+   */
+  public String getManifestXml() throws IOException {
+    return getBase().getManifestXml();
+  }
+
+  /**
+   * @return the AndroidManifest of the base APK.
+   * @throws IOException
+   *     if parsing failed.
+   */
+  public AndroidManifest getAndroidManifest() throws IOException, ParseException {
+    return getBase().getAndroidManifest();
+  }
+
+  /**
+   * Get the resource tables of all APKs merged into one. The tables are parsed concurrently on the
+   * executor, see {@link #setExecutor(Executor)}.
+   *
+   * @return the merged resource table.
+   * @throws IOException
+   *     if parsing a resource table failed.
+   */
+  public synchronized ResourceTable getResourceTable() throws IOException {
+    if (resourceTable == null) {
+      parseResourceTables();
+    }
+    return resourceTable;
+  }
+
+  /**
+   * @return the locales of all APKs.
+   * @throws IOException
+   *     if parsing a resource table failed.
+   */
+  public synchronized Set<Locale> getLocales() throws IOException {
+    if (locales == null) {
+      parseResourceTables();
+    }
+    return locales;
+  }
+
+  public Locale getPreferredLocale() {
+    return getBase().getPreferredLocale();
+  }
+
+  /**
+   * The locale preferred when resolving references of the base APK. Will cause getManifestXml /
+   * getApkMeta to return different values.
+   */
+  public void setPreferredLocale(Locale locale) {
+    getBase().setPreferredLocale(locale);
+  }
+
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * @param executor
+   *     the executor to parse the resource tables on. If {@code null} (the default), a thread
+   *     pool sized to the number of available processors is used while parsing.
+   */
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  private void parseResourceTables() throws IOException {
+    Executor executor = this.executor;
+    ExecutorService ownExecutor = null;
+    if (executor == null) {
+      int threads = Math.min(parsers.size(), Runtime.getRuntime().availableProcessors());
+      ownExecutor = Executors.newFixedThreadPool(threads);
+      executor = ownExecutor;
+    }
+    List<FutureTask<ResourceTable>> tasks = new ArrayList<>(parsers.size());
+    try {
+      for (final ApkParser parser : parsers) {
+        FutureTask<ResourceTable> task = new FutureTask<>(new Callable<ResourceTable>() {
+
+          @Override public ResourceTable call() throws IOException {
+            return parser.getResourceTable();
+          }
+        });
+        tasks.add(task);
+        executor.execute(task);
+      }
+      List<ResourceTable> tables = new ArrayList<>(tasks.size());
+      for (FutureTask<ResourceTable> task : tasks) {
+        tables.add(getResult(task));
+      }
+      Set<Locale> locales = new LinkedHashSet<>();
+      for (ApkParser parser : parsers) {
+        // already parsed with the table
+        locales.addAll(parser.getLocales());
+      }
+      this.resourceTable = ResourceTable.merge(tables);
+      this.locales = Collections.unmodifiableSet(locales);
+    } finally {
+      for (FutureTask<ResourceTable> task : tasks) {
+        task.cancel(false);
+      }
+      if (ownExecutor != null) {
+        ownExecutor.shutdown();
+      }
+    }
+  }
+
+  private static <T> T getResult(FutureTask<T> task) throws IOException {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while parsing resource tables");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new ParserException("Error parsing resource table", cause);
+    }
+  }
+
+  @Override public void close() {
+    for (ApkParser parser : parsers) {
+      parser.close();
+    }
+    resourceTable = null;
+  }
+
+}
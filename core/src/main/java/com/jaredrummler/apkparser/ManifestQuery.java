@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser;
+
+import com.jaredrummler.apkparser.parser.BinaryXmlParser;
+import com.jaredrummler.apkparser.parser.XmlCursor;
+import com.jaredrummler.apkparser.parser.XmlCursorListener;
+import com.jaredrummler.apkparser.struct.ResValue;
+import com.jaredrummler.apkparser.struct.resource.ResourceTable;
+import com.jaredrummler.apkparser.utils.ParseUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Selects a few attribute values from AndroidManifest.xml without decoding the whole file.
+ *
+ * <p>A selector is an element path and an attribute name, e.g. {@code "manifest@package"},
+ * {@code "uses-sdk@minSdkVersion"} or {@code "application/activity@name"}. The path is relative
+ * to the {@code <manifest>} root element, which may be left out; {@code "*"} selects every
+ * attribute of the element.</p>
+ *
+ * <p>Elements that cannot contain a selected element are skipped by chunk size, and parsing stops
+ * once every selector has matched (see {@link Builder#selectAll(String)} for repeated elements).
+ * resources.arsc is only parsed if a selected value is a resource reference.</p>
+ *
+ * <pre>
+ * ManifestQuery query = ManifestQuery.of("manifest@package", "manifest@versionCode");
+ * ManifestQuery.Result result = apkParser.queryManifest(query);
+ * String packageName = result.get("manifest@package");
+ * </pre>
+ */
+public final class ManifestQuery {
+
+  private static final String ROOT = "manifest";
+  private static final String ANY_ATTRIBUTE = "*";
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * @return a query for the first match of each selector.
+   */
+  public static ManifestQuery of(String... selectors) {
+    Builder builder = newBuilder();
+    for (String selector : selectors) {
+      builder.select(selector);
+    }
+    return builder.build();
+  }
+
+  private final Selector[] selectors;
+
+  private ManifestQuery(Builder builder) {
+    this.selectors = builder.selectors.toArray(new Selector[builder.selectors.size()]);
+  }
+
+  Result run(ByteBuffer manifest, ApkParser apkParser, Locale locale) throws IOException {
+    boolean resolveReferences = apkParser.isResolveReferences();
+    Matcher matcher = new Matcher(resolveReferences);
+    BinaryXmlParser parser = new BinaryXmlParser(manifest, null);
+    parser.setLocale(locale);
+    parser.setResolveReferences(resolveReferences);
+    parser.setXmlCursorListener(matcher);
+    parser.parse();
+    if (!matcher.references.isEmpty()) {
+      // the provider's table, which for a split APK set is the merged one
+      ResourceTable resourceTable = apkParser.getReferenceTable();
+      for (Reference reference : matcher.references) {
+        String value = ParseUtils.getResourceById(reference.resourceId, resourceTable, locale);
+        reference.values.set(reference.index,
+            BinaryXmlParser.formatAttributeValue(reference.attribute, value));
+      }
+    }
+    return new Result(matcher.values);
+  }
+
+  /**
+   * The selected values, keyed by {@code path@attribute} as given in the query. Values of
+   * {@code "*"} selectors are keyed by the actual attribute name.
+   */
+  public static final class Result {
+
+    private final Map<String, List<String>> values;
+
+    private Result(Map<String, List<String>> values) {
+      this.values = values;
+    }
+
+    /**
+     * @return the first value of the selector, or {@code null} if nothing matched.
+     */
+    public String get(String key) {
+      List<String> list = values.get(key);
+      return list == null ? null : list.get(0);
+    }
+
+    /**
+     * @return every value of the selector, in document order.
+     */
+    public List<String> getAll(String key) {
+      List<String> list = values.get(key);
+      return list == null ? Collections.<String>emptyList() : Collections.unmodifiableList(list);
+    }
+
+    public Map<String, List<String>> asMap() {
+      return Collections.unmodifiableMap(values);
+    }
+
+    @Override public String toString() {
+      return "Result" + values;
+    }
+  }
+
+  public static final class Builder {
+
+    private final List<Selector> selectors = new ArrayList<>();
+
+    private Builder() {
+    }
+
+    /**
+     * Select an attribute of the first element matching the path.
+     */
+    public Builder select(String selector) {
+      selectors.add(new Selector(selector, false));
+      return this;
+    }
+
+    /**
+     * Select an attribute of every element matching the path, e.g.
+     * {@code "uses-permission@name"}. Parsing continues until the parent of the matching elements
+     * ends.
+     */
+    public Builder selectAll(String selector) {
+      selectors.add(new Selector(selector, true));
+      return this;
+    }
+
+    public ManifestQuery build() {
+      if (selectors.isEmpty()) {
+        throw new IllegalStateException("no selectors");
+      }
+      return new ManifestQuery(this);
+    }
+  }
+
+  private static final class Selector {
+
+    final String path;
+    final String attribute;
+    // element names from the root, e.g. {"manifest", "application", "activity"}
+    final String[] elements;
+    final boolean all;
+
+    Selector(String selector, boolean all) {
+      int at = selector.indexOf('@');
+      if (at <= 0 || at == selector.length() - 1) {
+        throw new IllegalArgumentException("expected path@attribute: " + selector);
+      }
+      this.path = selector.substring(0, at);
+      this.attribute = selector.substring(at + 1);
+      this.all = all;
+      String[] names = path.split("/");
+      if (names[0].equals(ROOT)) {
+        elements = names;
+      } else {
+        elements = new String[names.length + 1];
+        elements[0] = ROOT;
+        System.arraycopy(names, 0, elements, 1, names.length);
+      }
+    }
+  }
+
+  private static final class Reference {
+
+    final List<String> values;
+    final int index;
+    final String attribute;
+    final long resourceId;
+
+    Reference(List<String> values, int index, String attribute, long resourceId) {
+      this.values = values;
+      this.index = index;
+      this.attribute = attribute;
+      this.resourceId = resourceId;
+    }
+  }
+
+  private final class Matcher implements XmlCursorListener {
+
+    final Map<String, List<String>> values = new LinkedHashMap<>();
+    final List<Reference> references = new ArrayList<>();
+    // element names of the current path, indexed by depth - 1
+    private String[] path = new String[8];
+    // whether the selector at the same index has matched, or for selectAll, has finished
+    private final boolean[] done = new boolean[selectors.length];
+    private int remaining = selectors.length;
+    private final boolean resolveReferences;
+
+    Matcher(boolean resolveReferences) {
+      this.resolveReferences = resolveReferences;
+    }
+
+    @Override public void onStartTag(XmlCursor cursor) {
+      int depth = cursor.getDepth();
+      if (depth > path.length) {
+        String[] grown = new String[path.length * 2];
+        System.arraycopy(path, 0, grown, 0, path.length);
+        path = grown;
+      }
+      path[depth - 1] = cursor.getName();
+
+      boolean descend = false;
+      for (int i = 0; i < selectors.length; i++) {
+        if (done[i]) {
+          continue;
+        }
+        Selector selector = selectors[i];
+        if (!startsWith(selector, depth)) {
+          continue;
+        }
+        if (selector.elements.length == depth) {
+          collect(cursor, selector);
+          if (!selector.all) {
+            done[i] = true;
+            remaining--;
+          }
+        } else {
+          descend = true;
+        }
+      }
+      if (remaining == 0) {
+        cursor.stop();
+      } else if (!descend) {
+        cursor.skipChildren();
+      }
+    }
+
+    @Override public void onEndTag(XmlCursor cursor) {
+      // a selectAll selector is finished once the parent of its elements ends
+      int depth = cursor.getDepth();
+      for (int i = 0; i < selectors.length; i++) {
+        Selector selector = selectors[i];
+        if (!done[i] && selector.all && selector.elements.length == depth + 1
+            && startsWith(selector, depth)) {
+          done[i] = true;
+          remaining--;
+        }
+      }
+      if (remaining == 0) {
+        cursor.stop();
+      }
+    }
+
+    private boolean startsWith(Selector selector, int depth) {
+      if (selector.elements.length < depth) {
+        return false;
+      }
+      for (int d = 0; d < depth; d++) {
+        if (!selector.elements[d].equals(path[d])) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void collect(XmlCursor cursor, Selector selector) {
+      if (selector.attribute.equals(ANY_ATTRIBUTE)) {
+        for (int i = 0; i < cursor.getAttributeCount(); i++) {
+          add(cursor, i, selector.path + "@" + cursor.getAttributeName(i));
+        }
+      } else {
+        int index = cursor.indexOfAttribute(selector.attribute);
+        if (index != -1) {
+          add(cursor, index, selector.path + "@" + selector.attribute);
+        }
+      }
+    }
+
+    private void add(XmlCursor cursor, int index, String key) {
+      List<String> list = values.get(key);
+      if (list == null) {
+        list = new ArrayList<>(1);
+        values.put(key, list);
+      }
+      if (resolveReferences && cursor.getAttributeRawValue(index) == null
+          && cursor.getAttributeDataType(index) == ResValue.ResType.REFERENCE) {
+        // resolved once the document is parsed, so resources.arsc is only read when needed
+        long resourceId = cursor.getAttributeData(index) & 0xffffffffL;
+        references.add(new Reference(list, list.size(), cursor.getAttributeName(index),
+            resourceId));
+        list.add(null);
+      } else {
+        list.add(cursor.getAttributeValue(index));
+      }
+    }
+  }
+
+}
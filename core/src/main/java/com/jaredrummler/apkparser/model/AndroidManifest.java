@@ -57,10 +57,21 @@ public class AndroidManifest {
     return builder.build();
   }
 
+  // the legacy DOM path still fills the deprecated IntentFilter.attributes
+  @SuppressWarnings("deprecation")
   private static IntentFilter getIntentFilter(Node intentNode) {
     NodeList intentChildren = intentNode.getChildNodes();
     IntentFilter intentFilter = new IntentFilter();
     intentFilter.attributes = intentNode.getAttributes();
+    NamedNodeMap attributes = intentFilter.attributes;
+    for (int i = 0; i < attributes.getLength(); i++) {
+      Node attribute = attributes.item(i);
+      String name = attribute.getNodeName();
+      if (name.startsWith("android:")) {
+        name = name.substring("android:".length());
+      }
+      intentFilter.attributeValues.put(name, attribute.getNodeValue());
+    }
     for (int j = 0; j < intentChildren.getLength(); j++) {
       Node intentChild = intentChildren.item(j);
       String intentChildName = intentChild.getNodeName();
@@ -91,6 +102,42 @@ public class AndroidManifest {
   public final ApkMeta apkMeta;
   public final String xml;
 
+  /**
+   * @param apkMeta
+   *     the meta data of the APK
+   * @param xml
+   *     the decoded AndroidManifest.xml
+   * @param components
+   *     the components declared in the manifest, e.g. from
+   *     {@link com.jaredrummler.apkparser.parser.AndroidComponentTranslator}
+   */
+  public AndroidManifest(ApkMeta apkMeta, String xml, List<AndroidComponent> components) {
+    this.apkMeta = apkMeta;
+    this.xml = xml;
+    for (AndroidComponent component : components) {
+      switch (component.type) {
+        case TYPE_ACTIVITY:
+          activities.add(component);
+          break;
+        case TYPE_SERVICE:
+          services.add(component);
+          break;
+        case TYPE_BROADCAST_RECEIVER:
+          receivers.add(component);
+          break;
+        case TYPE_CONTENT_PROVIDER:
+          providers.add(component);
+          break;
+      }
+    }
+  }
+
+  /**
+   * @deprecated parses the xml text again with a DOM parser. Use
+   * {@link #AndroidManifest(ApkMeta, String, List)} with the components collected while the binary
+   * xml is parsed.
+   */
+  @Deprecated
   public AndroidManifest(ApkMeta apkMeta, String xml) throws ParserException {
     this.apkMeta = apkMeta;
     this.xml = xml;
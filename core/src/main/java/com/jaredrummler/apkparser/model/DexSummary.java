@@ -26,33 +26,57 @@
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
-package com.jaredrummler.apkparser.struct.resource;
+package com.jaredrummler.apkparser.model;
 
-import android.util.SparseArray;
+import com.jaredrummler.apkparser.struct.dex.DexHeader;
 
-import com.jaredrummler.apkparser.struct.StringPool;
-import com.jaredrummler.apkparser.utils.ResourceLoader;
+import java.util.Collections;
+import java.util.List;
 
-public class ResourceTable {
-
-  private SparseArray<ResourcePackage> packageMap = new SparseArray<>();
-  private StringPool stringPool;
+/**
+ * The headers of all dex files of an APK and their total string, type, field, method and class
+ * counts.
+ */
+public class DexSummary {
 
-  public static SparseArray<String> sysStyle = ResourceLoader.loadSystemStyles();
+  /** The header of each dex file, in dex order (classes.dex, classes2.dex, ...). */
+  public final List<DexHeader> headers;
+  public final int stringCount;
+  public final int typeCount;
+  public final int fieldCount;
+  public final int methodCount;
+  public final int classCount;
 
-  public void addPackage(ResourcePackage resourcePackage) {
-    this.packageMap.put(resourcePackage.getId(), resourcePackage);
+  public DexSummary(List<DexHeader> headers) {
+    this.headers = Collections.unmodifiableList(headers);
+    int strings = 0;
+    int types = 0;
+    int fields = 0;
+    int methods = 0;
+    int classes = 0;
+    for (DexHeader header : headers) {
+      strings += header.stringIdsSize;
+      types += header.typeIdsSize;
+      fields += header.fieldIdsSize;
+      methods += header.methodIdsSize;
+      classes += header.classDefsSize;
+    }
+    this.stringCount = strings;
+    this.typeCount = types;
+    this.fieldCount = fields;
+    this.methodCount = methods;
+    this.classCount = classes;
   }
 
-  public ResourcePackage getPackage(short id) {
-    return this.packageMap.get(id);
+  @Override public String toString() {
+    return "DexSummary{" +
+        "dexCount=" + headers.size() +
+        ", stringCount=" + stringCount +
+        ", typeCount=" + typeCount +
+        ", fieldCount=" + fieldCount +
+        ", methodCount=" + methodCount +
+        ", classCount=" + classCount +
+        '}';
   }
 
-  public StringPool getStringPool() {
-    return stringPool;
-  }
-
-  public void setStringPool(StringPool stringPool) {
-    this.stringPool = stringPool;
-  }
 }
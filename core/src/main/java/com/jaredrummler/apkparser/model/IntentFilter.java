@@ -21,13 +21,25 @@ import org.w3c.dom.NamedNodeMap;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class IntentFilter {
 
   public final List<String> actions = new ArrayList<>();
   public final List<String> categories = new ArrayList<>();
   public final List<IntentData> dataList = new ArrayList<>();
+  /**
+   * The attributes of the intent-filter element, e.g. "priority", keyed by name without the
+   * namespace prefix.
+   */
+  public final Map<String, String> attributeValues = new LinkedHashMap<>();
+  /**
+   * @deprecated only set by {@link AndroidManifest#AndroidManifest(ApkMeta, String)}. Use
+   * {@link #attributeValues}.
+   */
+  @Deprecated
   public NamedNodeMap attributes;
 
   public static class IntentData {
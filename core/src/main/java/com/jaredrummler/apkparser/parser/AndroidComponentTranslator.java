@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser.parser;
+
+import com.jaredrummler.apkparser.model.AndroidComponent;
+import com.jaredrummler.apkparser.model.IntentFilter;
+import com.jaredrummler.apkparser.struct.xml.Attribute;
+import com.jaredrummler.apkparser.struct.xml.Attributes;
+import com.jaredrummler.apkparser.struct.xml.XmlCData;
+import com.jaredrummler.apkparser.struct.xml.XmlNamespaceEndTag;
+import com.jaredrummler.apkparser.struct.xml.XmlNamespaceStartTag;
+import com.jaredrummler.apkparser.struct.xml.XmlNodeEndTag;
+import com.jaredrummler.apkparser.struct.xml.XmlNodeStartTag;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.jaredrummler.apkparser.model.AndroidComponent.TYPE_ACTIVITY;
+import static com.jaredrummler.apkparser.model.AndroidComponent.TYPE_BROADCAST_RECEIVER;
+import static com.jaredrummler.apkparser.model.AndroidComponent.TYPE_CONTENT_PROVIDER;
+import static com.jaredrummler.apkparser.model.AndroidComponent.TYPE_SERVICE;
+
+/**
+ * Collects the activities, services, receivers and providers declared in AndroidManifest.xml,
+ * with their intent filters, as the binary xml is parsed.
+ */
+public class AndroidComponentTranslator implements XmlStreamer {
+
+  // element depths: <manifest> is 1, <application> 2, components 3, intent filters 4
+  private static final int DEPTH_APPLICATION = 2;
+  private static final int DEPTH_COMPONENT = 3;
+  private static final int DEPTH_INTENT_FILTER = 4;
+  private static final int DEPTH_INTENT_FILTER_CHILD = 5;
+
+  private final List<AndroidComponent> components = new ArrayList<>();
+  private AndroidComponent.Builder component;
+  private IntentFilter intentFilter;
+  private boolean inApplication;
+  private int depth;
+
+  @Override public void onStartTag(XmlNodeStartTag xmlNodeStartTag) {
+    depth++;
+    String name = xmlNodeStartTag.getName();
+    Attributes attributes = xmlNodeStartTag.getAttributes();
+    switch (depth) {
+      case DEPTH_APPLICATION:
+        inApplication = name.equals("application");
+        break;
+      case DEPTH_COMPONENT:
+        if (inApplication) {
+          int type = getComponentType(name);
+          if (type != -1) {
+            component = AndroidComponent.newAndroidComponent(type)
+                .name(attributes.get("name"))
+                .exported(attributes.getBoolean("exported", false))
+                .process(attributes.get("process"));
+          }
+        }
+        break;
+      case DEPTH_INTENT_FILTER:
+        if (component != null && name.equals("intent-filter")) {
+          intentFilter = new IntentFilter();
+          for (Attribute attribute : attributes.value()) {
+            intentFilter.attributeValues.put(attribute.getName(), attribute.getValue());
+          }
+        }
+        break;
+      case DEPTH_INTENT_FILTER_CHILD:
+        if (intentFilter != null) {
+          addIntentFilterChild(name, attributes);
+        }
+        break;
+    }
+  }
+
+  @Override public void onEndTag(XmlNodeEndTag xmlNodeEndTag) {
+    if (depth == DEPTH_INTENT_FILTER && intentFilter != null) {
+      component.addIntentFilter(intentFilter);
+      intentFilter = null;
+    } else if (depth == DEPTH_COMPONENT && component != null) {
+      components.add(component.build());
+      component = null;
+    } else if (depth == DEPTH_APPLICATION) {
+      inApplication = false;
+    }
+    depth--;
+  }
+
+  @Override public void onCData(XmlCData xmlCData) {
+  }
+
+  @Override public void onNamespaceStart(XmlNamespaceStartTag tag) {
+  }
+
+  @Override public void onNamespaceEnd(XmlNamespaceEndTag tag) {
+  }
+
+  /**
+   * @return the components, in the order they are declared.
+   */
+  public List<AndroidComponent> getComponents() {
+    return components;
+  }
+
+  private void addIntentFilterChild(String name, Attributes attributes) {
+    switch (name) {
+      case "action":
+        intentFilter.actions.add(attributes.get("name"));
+        break;
+      case "category":
+        intentFilter.categories.add(attributes.get("name"));
+        break;
+      case "data":
+        intentFilter.dataList.add(new IntentFilter.IntentData(
+            attributes.get("scheme"),
+            attributes.get("host"),
+            attributes.get("port"),
+            attributes.get("path"),
+            attributes.get("pathPattern"),
+            attributes.get("pathPrefix"),
+            attributes.get("mimeType"),
+            attributes.get("type")));
+        break;
+    }
+  }
+
+  private static int getComponentType(String name) {
+    switch (name) {
+      case "service":
+        return TYPE_SERVICE;
+      case "activity":
+      case "activity-alias":
+        return TYPE_ACTIVITY;
+      case "receiver":
+        return TYPE_BROADCAST_RECEIVER;
+      case "provider":
+        return TYPE_CONTENT_PROVIDER;
+      default:
+        return -1;
+    }
+  }
+
+}
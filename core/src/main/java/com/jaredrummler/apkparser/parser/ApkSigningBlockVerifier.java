@@ -0,0 +1,573 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser.parser;
+
+import com.jaredrummler.apkparser.ApkParser.ApkSignStatus;
+import com.jaredrummler.apkparser.exception.ParserException;
+import com.jaredrummler.apkparser.utils.ZipArchive;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verifies the APK Signature Scheme v2 and v3 signatures of an APK.
+ *
+ * <p>These signatures are stored in the APK Signing Block, right before the central directory.
+ * They sign digests of the whole file rather than of each entry: the entries, the central
+ * directory and the end of central directory record are split into 1MB chunks, every chunk is
+ * digested on its own, and the signed digest is the digest of the chunk digests. The chunks are
+ * mapped from the file and can be digested concurrently.</p>
+ *
+ * @see <a href="https://source.android.com/security/apksigning/v2">APK Signature Scheme v2</a>
+ */
+public class ApkSigningBlockVerifier {
+
+  public static final int V2_BLOCK_ID = 0x7109871a;
+  public static final int V3_BLOCK_ID = 0xf05368c0;
+
+  // "APK Sig Block 42"
+  private static final long MAGIC_LO = 0x20676953204b5041L;
+  private static final long MAGIC_HI = 0x3234206b636f6c42L;
+  private static final int FOOTER_SIZE = 24;
+  private static final int CHUNK_SIZE = 1024 * 1024;
+
+  private static final int SIGNATURE_RSA_PSS_WITH_SHA256 = 0x0101;
+  private static final int SIGNATURE_RSA_PSS_WITH_SHA512 = 0x0102;
+  private static final int SIGNATURE_RSA_PKCS1_V1_5_WITH_SHA256 = 0x0103;
+  private static final int SIGNATURE_RSA_PKCS1_V1_5_WITH_SHA512 = 0x0104;
+  private static final int SIGNATURE_ECDSA_WITH_SHA256 = 0x0201;
+  private static final int SIGNATURE_ECDSA_WITH_SHA512 = 0x0202;
+  private static final int SIGNATURE_DSA_WITH_SHA256 = 0x0301;
+
+  private final FileChannel channel;
+  private boolean parsed;
+  private ParserException error;
+  private int schemeVersion;
+  private List<Signer> signers;
+  private long signingBlockOffset;
+  private long centralDirectoryOffset;
+  private long eocdOffset;
+  private ByteBuffer eocd;
+
+  /**
+   * @param channel
+   *     the APK file
+   */
+  public ApkSigningBlockVerifier(FileChannel channel) {
+    this.channel = channel;
+  }
+
+  /**
+   * @return 3 or 2 for the newest APK Signature Scheme the APK is signed with, or 0 if it has no
+   * APK Signing Block or no v2/v3 signature in it.
+   * @throws IOException
+   *     if reading the APK file failed.
+   */
+  public int getSchemeVersion() throws IOException {
+    parse();
+    return schemeVersion;
+  }
+
+  /**
+   * @return the encoded X.509 certificates of the signers, one chain per signer with the
+   * signer's own certificate first. Empty if the APK has no v2/v3 signature.
+   * @throws IOException
+   *     if reading the APK file failed.
+   */
+  public List<List<byte[]>> getCertificates() throws IOException {
+    parse();
+    List<List<byte[]>> certificates = new ArrayList<>();
+    if (signers != null) {
+      for (Signer signer : signers) {
+        certificates.add(signer.certificates);
+      }
+    }
+    return certificates;
+  }
+
+  /**
+   * Verify the signature of the newest scheme the APK is signed with.
+   *
+   * @param executor
+   *     the executor to digest the chunks on, or {@code null} to digest them on the calling
+   *     thread.
+   * @return {@link ApkSignStatus#SIGNED} or {@link ApkSignStatus#INCORRECT}, or
+   * {@link ApkSignStatus#NOT_SIGNED} if the APK has no v2/v3 signature.
+   * @throws IOException
+   *     if reading the APK file failed.
+   */
+  public int verify(Executor executor) throws IOException {
+    try {
+      parse();
+    } catch (ParserException e) {
+      // a malformed signing block is a broken signature
+      return ApkSignStatus.INCORRECT;
+    }
+    if (schemeVersion == 0) {
+      return ApkSignStatus.NOT_SIGNED;
+    }
+    if (signers == null || signers.isEmpty()) {
+      return ApkSignStatus.INCORRECT;
+    }
+    // content digest algorithm -> expected digest, the same for all signers
+    Map<String, byte[]> expectedDigests = new HashMap<>();
+    for (Signer signer : signers) {
+      int algorithm = verifySigner(signer);
+      if (algorithm == -1) {
+        return ApkSignStatus.INCORRECT;
+      }
+      byte[] digest = signer.digests.get(signer.digestAlgorithms.indexOf(algorithm));
+      byte[] previous = expectedDigests.put(getDigestAlgorithm(algorithm), digest);
+      if (previous != null && !Arrays.equals(previous, digest)) {
+        return ApkSignStatus.INCORRECT;
+      }
+    }
+    for (Map.Entry<String, byte[]> entry : expectedDigests.entrySet()) {
+      byte[] actual = computeContentDigest(entry.getKey(), executor);
+      if (!MessageDigest.isEqual(actual, entry.getValue())) {
+        return ApkSignStatus.INCORRECT;
+      }
+    }
+    return ApkSignStatus.SIGNED;
+  }
+
+  private void parse() throws IOException {
+    if (error != null) {
+      throw error;
+    }
+    if (parsed) {
+      return;
+    }
+    try {
+      readSigningBlock();
+    } catch (ParserException e) {
+      error = e;
+      throw e;
+    }
+    parsed = true;
+  }
+
+  private void readSigningBlock() throws IOException {
+    ByteBuffer eocd = ZipArchive.readEndOfCentralDirectory(channel);
+    if (eocd == null) {
+      return;
+    }
+    long eocdOffset = channel.size() - eocd.remaining();
+    long centralDirectoryOffset = eocd.getInt(16) & 0xffffffffL;
+    if (centralDirectoryOffset < FOOTER_SIZE + 8 || centralDirectoryOffset > eocdOffset) {
+      return;
+    }
+    ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    ZipArchive.readFully(channel, footer, centralDirectoryOffset - FOOTER_SIZE);
+    if (footer.getLong(8) != MAGIC_LO || footer.getLong(16) != MAGIC_HI) {
+      return;
+    }
+    // the size excludes the leading size field
+    long blockSize = footer.getLong(0);
+    long blockOffset = centralDirectoryOffset - blockSize - 8;
+    if (blockSize < FOOTER_SIZE || blockSize > Integer.MAX_VALUE || blockOffset < 0) {
+      throw new ParserException("Invalid APK Signing Block size: " + blockSize);
+    }
+    ByteBuffer block = ByteBuffer.allocate((int) blockSize + 8).order(ByteOrder.LITTLE_ENDIAN);
+    ZipArchive.readFully(channel, block, blockOffset);
+    if (block.getLong(0) != blockSize) {
+      throw new ParserException("Invalid APK Signing Block: sizes do not match");
+    }
+    ByteBuffer pairs = slice(block, 8, block.capacity() - FOOTER_SIZE);
+    ByteBuffer v2Block = null;
+    ByteBuffer v3Block = null;
+    try {
+      while (pairs.hasRemaining()) {
+        long length = pairs.getLong();
+        if (length < 4 || length > pairs.remaining()) {
+          throw new ParserException("Invalid APK Signing Block entry size: " + length);
+        }
+        int id = pairs.getInt();
+        ByteBuffer value = slice(pairs, pairs.position(), pairs.position() + (int) length - 4);
+        pairs.position(pairs.position() + (int) length - 4);
+        if (id == V2_BLOCK_ID) {
+          v2Block = value;
+        } else if (id == V3_BLOCK_ID) {
+          v3Block = value;
+        }
+      }
+    } catch (BufferUnderflowException e) {
+      throw new ParserException("Invalid APK Signing Block");
+    }
+    this.signingBlockOffset = blockOffset;
+    this.centralDirectoryOffset = centralDirectoryOffset;
+    this.eocdOffset = eocdOffset;
+    this.eocd = eocd;
+    if (v3Block != null) {
+      schemeVersion = 3;
+      signers = readSigners(v3Block, true);
+    } else if (v2Block != null) {
+      schemeVersion = 2;
+      signers = readSigners(v2Block, false);
+    }
+  }
+
+  /**
+   * @return the signers, or {@code null} if the block is malformed.
+   */
+  private static List<Signer> readSigners(ByteBuffer block, boolean v3) {
+    try {
+      List<Signer> signers = new ArrayList<>();
+      ByteBuffer signerBlocks = lengthPrefixed(block);
+      while (signerBlocks.hasRemaining()) {
+        ByteBuffer signerBlock = lengthPrefixed(signerBlocks);
+        Signer signer = new Signer();
+        signer.signedData = lengthPrefixed(signerBlock);
+        if (v3) {
+          // minSdkVersion, maxSdkVersion; repeated in the signed data
+          signerBlock.getInt();
+          signerBlock.getInt();
+        }
+        ByteBuffer signatures = lengthPrefixed(signerBlock);
+        while (signatures.hasRemaining()) {
+          ByteBuffer signature = lengthPrefixed(signatures);
+          signer.signatureAlgorithms.add(signature.getInt());
+          signer.signatures.add(bytes(lengthPrefixed(signature)));
+        }
+        signer.publicKey = bytes(lengthPrefixed(signerBlock));
+
+        ByteBuffer signedData = signer.signedData.duplicate();
+        signedData.order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer digests = lengthPrefixed(signedData);
+        while (digests.hasRemaining()) {
+          ByteBuffer digest = lengthPrefixed(digests);
+          signer.digestAlgorithms.add(digest.getInt());
+          signer.digests.add(bytes(lengthPrefixed(digest)));
+        }
+        ByteBuffer certificates = lengthPrefixed(signedData);
+        while (certificates.hasRemaining()) {
+          signer.certificates.add(bytes(lengthPrefixed(certificates)));
+        }
+        signers.add(signer);
+      }
+      return signers;
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Verify the signature of a signer over its signed data.
+   *
+   * @return the verified signature algorithm, or -1 if the signer is not valid.
+   */
+  private static int verifySigner(Signer signer) {
+    int best = -1;
+    for (int i = 0; i < signer.signatureAlgorithms.size(); i++) {
+      int algorithm = signer.signatureAlgorithms.get(i);
+      if (getDigestAlgorithm(algorithm) != null
+          && (best == -1 || isStronger(algorithm, signer.signatureAlgorithms.get(best)))) {
+        best = i;
+      }
+    }
+    if (best == -1 || signer.certificates.isEmpty()
+        || !signer.signatureAlgorithms.equals(signer.digestAlgorithms)) {
+      return -1;
+    }
+    int algorithm = signer.signatureAlgorithms.get(best);
+    try {
+      PublicKey publicKey = KeyFactory.getInstance(getKeyAlgorithm(algorithm))
+          .generatePublic(new X509EncodedKeySpec(signer.publicKey));
+      Signature signature = newSignature(algorithm);
+      signature.initVerify(publicKey);
+      signature.update(signer.signedData.duplicate());
+      if (!signature.verify(signer.signatures.get(best))) {
+        return -1;
+      }
+      // the signer's certificate must hold the signing key
+      X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X.509")
+          .generateCertificate(new ByteArrayInputStream(signer.certificates.get(0)));
+      if (!Arrays.equals(certificate.getPublicKey().getEncoded(), signer.publicKey)) {
+        return -1;
+      }
+    } catch (GeneralSecurityException | IllegalArgumentException e) {
+      return -1;
+    }
+    return algorithm;
+  }
+
+  /**
+   * Compute the digest of the chunk digests of the entries, the central directory and the end
+   * of central directory record.
+   */
+  private byte[] computeContentDigest(final String algorithm, Executor executor)
+      throws IOException {
+    // the signed end of central directory record points at the signing block
+    final ByteBuffer eocdCopy = ByteBuffer.allocate(eocd.remaining())
+        .order(ByteOrder.LITTLE_ENDIAN);
+    eocdCopy.put(eocd.duplicate());
+    eocdCopy.putInt(16, (int) signingBlockOffset);
+    eocdCopy.flip();
+
+    final List<long[]> chunks = new ArrayList<>();
+    addChunks(chunks, 0, signingBlockOffset);
+    addChunks(chunks, centralDirectoryOffset, eocdOffset);
+    final int eocdChunks = addChunks(chunks, eocdOffset, eocdOffset + eocdCopy.remaining());
+
+    final int digestLength;
+    try {
+      digestLength = MessageDigest.getInstance(algorithm).getDigestLength();
+    } catch (NoSuchAlgorithmException e) {
+      throw new ParserException("Unsupported digest algorithm: " + algorithm);
+    }
+    final byte[] chunkDigests = new byte[5 + chunks.size() * digestLength];
+    chunkDigests[0] = 0x5a;
+    putIntLE(chunkDigests, 1, chunks.size());
+
+    final IOException[] error = new IOException[1];
+    final CountDownLatch done = new CountDownLatch(1);
+    final AtomicInteger remaining = new AtomicInteger(chunks.size());
+    for (int i = 0; i < chunks.size(); i++) {
+      final int index = i;
+      Runnable task = new Runnable() {
+        @Override public void run() {
+          try {
+            long[] chunk = chunks.get(index);
+            ByteBuffer data;
+            if (index >= chunks.size() - eocdChunks) {
+              data = eocdCopy.duplicate();
+              data.position((int) (chunk[0] - eocdOffset));
+              data.limit((int) (chunk[1] - eocdOffset));
+            } else {
+              data = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+            }
+            byte[] digest = digestChunk(algorithm, data);
+            System.arraycopy(digest, 0, chunkDigests, 5 + index * digestLength, digestLength);
+          } catch (IOException e) {
+            synchronized (error) {
+              error[0] = e;
+            }
+          } finally {
+            if (remaining.decrementAndGet() == 0) {
+              done.countDown();
+            }
+          }
+        }
+      };
+      if (executor == null) {
+        task.run();
+      } else {
+        executor.execute(task);
+      }
+    }
+    try {
+      done.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while verifying the APK signature");
+    }
+    synchronized (error) {
+      if (error[0] != null) {
+        throw error[0];
+      }
+    }
+    return newMessageDigest(algorithm).digest(chunkDigests);
+  }
+
+  /**
+   * Split {@code [start, end)} into chunks of at most 1MB.
+   *
+   * @return the number of chunks added.
+   */
+  private static int addChunks(List<long[]> chunks, long start, long end) {
+    int count = 0;
+    for (long position = start; position < end; position += CHUNK_SIZE) {
+      chunks.add(new long[]{position, Math.min(end, position + CHUNK_SIZE)});
+      count++;
+    }
+    return count;
+  }
+
+  private static byte[] digestChunk(String algorithm, ByteBuffer data) {
+    MessageDigest digest = newMessageDigest(algorithm);
+    byte[] prefix = new byte[5];
+    prefix[0] = (byte) 0xa5;
+    putIntLE(prefix, 1, data.remaining());
+    digest.update(prefix);
+    digest.update(data);
+    return digest.digest();
+  }
+
+  private static MessageDigest newMessageDigest(String algorithm) {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      // checked before the chunks are digested
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Signature newSignature(int algorithm) throws GeneralSecurityException {
+    switch (algorithm) {
+      case SIGNATURE_RSA_PSS_WITH_SHA256:
+        return newPssSignature("SHA-256", MGF1ParameterSpec.SHA256, 32);
+      case SIGNATURE_RSA_PSS_WITH_SHA512:
+        return newPssSignature("SHA-512", MGF1ParameterSpec.SHA512, 64);
+      case SIGNATURE_RSA_PKCS1_V1_5_WITH_SHA256:
+        return Signature.getInstance("SHA256withRSA");
+      case SIGNATURE_RSA_PKCS1_V1_5_WITH_SHA512:
+        return Signature.getInstance("SHA512withRSA");
+      case SIGNATURE_ECDSA_WITH_SHA256:
+        return Signature.getInstance("SHA256withECDSA");
+      case SIGNATURE_ECDSA_WITH_SHA512:
+        return Signature.getInstance("SHA512withECDSA");
+      case SIGNATURE_DSA_WITH_SHA256:
+        return Signature.getInstance("SHA256withDSA");
+      default:
+        throw new NoSuchAlgorithmException("Unknown signature algorithm: " + algorithm);
+    }
+  }
+
+  private static Signature newPssSignature(String digest, MGF1ParameterSpec mgf1, int saltLength)
+      throws GeneralSecurityException {
+    AlgorithmParameterSpec params = new PSSParameterSpec(digest, "MGF1", mgf1, saltLength, 1);
+    Signature signature;
+    try {
+      // Android and security providers such as Bouncy Castle
+      signature = Signature.getInstance(digest.replace("-", "") + "withRSA/PSS");
+    } catch (NoSuchAlgorithmException e) {
+      // Java 11+
+      signature = Signature.getInstance("RSASSA-PSS");
+    }
+    signature.setParameter(params);
+    return signature;
+  }
+
+  /**
+   * @return the content digest algorithm of a signature algorithm, or {@code null} if the
+   * signature algorithm is not supported.
+   */
+  private static String getDigestAlgorithm(int algorithm) {
+    switch (algorithm) {
+      case SIGNATURE_RSA_PSS_WITH_SHA256:
+      case SIGNATURE_RSA_PKCS1_V1_5_WITH_SHA256:
+      case SIGNATURE_ECDSA_WITH_SHA256:
+      case SIGNATURE_DSA_WITH_SHA256:
+        return "SHA-256";
+      case SIGNATURE_RSA_PSS_WITH_SHA512:
+      case SIGNATURE_RSA_PKCS1_V1_5_WITH_SHA512:
+      case SIGNATURE_ECDSA_WITH_SHA512:
+        return "SHA-512";
+      default:
+        return null;
+    }
+  }
+
+  private static String getKeyAlgorithm(int algorithm) {
+    switch (algorithm & 0xff00) {
+      case 0x0100:
+        return "RSA";
+      case 0x0200:
+        return "EC";
+      default:
+        return "DSA";
+    }
+  }
+
+  private static boolean isStronger(int algorithm, int than) {
+    return "SHA-512".equals(getDigestAlgorithm(algorithm))
+        && !"SHA-512".equals(getDigestAlgorithm(than));
+  }
+
+  /**
+   * Read a uint32 length-prefixed slice and move past it.
+   */
+  private static ByteBuffer lengthPrefixed(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0 || length > buffer.remaining()) {
+      throw new IllegalArgumentException("Invalid length: " + length);
+    }
+    ByteBuffer slice = slice(buffer, buffer.position(), buffer.position() + length);
+    buffer.position(buffer.position() + length);
+    return slice;
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, int start, int end) {
+    ByteBuffer slice = buffer.duplicate();
+    slice.limit(end);
+    slice.position(start);
+    slice = slice.slice();
+    slice.order(ByteOrder.LITTLE_ENDIAN);
+    return slice;
+  }
+
+  private static byte[] bytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  private static void putIntLE(byte[] bytes, int offset, int value) {
+    bytes[offset] = (byte) value;
+    bytes[offset + 1] = (byte) (value >>> 8);
+    bytes[offset + 2] = (byte) (value >>> 16);
+    bytes[offset + 3] = (byte) (value >>> 24);
+  }
+
+  private static class Signer {
+
+    ByteBuffer signedData;
+    final List<Integer> digestAlgorithms = new ArrayList<>();
+    final List<byte[]> digests = new ArrayList<>();
+    final List<byte[]> certificates = new ArrayList<>();
+    final List<Integer> signatureAlgorithms = new ArrayList<>();
+    final List<byte[]> signatures = new ArrayList<>();
+    byte[] publicKey;
+  }
+}
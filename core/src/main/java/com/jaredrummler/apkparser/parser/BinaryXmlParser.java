@@ -51,6 +51,7 @@ import com.jaredrummler.apkparser.utils.Locales;
 import com.jaredrummler.apkparser.utils.ParseUtils;
 import com.jaredrummler.apkparser.utils.Utils;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Arrays;
@@ -65,10 +66,17 @@ public class BinaryXmlParser {
           "installLocation", "protectionLevel"));
 
   private StringPool stringPool;
+  private long[] resourceIds;
   private String[] resourceMap;
   private ByteBuffer buffer;
   private XmlStreamer xmlStreamer;
-  private final ResourceTable resourceTable;
+  private XmlCursorListener xmlCursorListener;
+  private XmlCursor xmlCursor;
+  private XmlNodeHeader nodeHeader;
+  private ResourceTableProvider resourceTableProvider;
+  private ResourceTable resourceTable;
+  private IOException resourceTableError;
+  private boolean resolveReferences = true;
   private Locale locale = Locales.ANY_LOCALE;
 
   public BinaryXmlParser(ByteBuffer buffer, ResourceTable resourceTable) {
@@ -100,7 +108,7 @@ public class BinaryXmlParser {
       return;
     }
     if (chunkHeader.getChunkType() == ChunkType.XML_RESOURCE_MAP) {
-      long[] resourceIds = readXmlResourceMap((XmlResourceMapHeader) chunkHeader);
+      resourceIds = readXmlResourceMap((XmlResourceMapHeader) chunkHeader);
       resourceMap = new String[resourceIds.length];
       for (int i = 0; i < resourceIds.length; i++) {
         resourceMap[i] = Attribute.AttrIds.getString(resourceIds[i]);
@@ -108,16 +116,23 @@ public class BinaryXmlParser {
       chunkHeader = readChunkHeader();
     }
 
+    if (xmlCursorListener != null) {
+      xmlCursor =
+          new XmlCursor(this, buffer, stringPool, resourceIds, resourceMap, locale);
+    }
+
     while (chunkHeader != null) {
       long beginPos = buffer.position();
       switch (chunkHeader.getChunkType()) {
         case ChunkType.XML_END_NAMESPACE:
-          XmlNamespaceEndTag xmlNamespaceEndTag = readXmlNamespaceEndTag();
-          xmlStreamer.onNamespaceEnd(xmlNamespaceEndTag);
+          if (xmlStreamer != null) {
+            xmlStreamer.onNamespaceEnd(readXmlNamespaceEndTag());
+          }
           break;
         case ChunkType.XML_START_NAMESPACE:
-          XmlNamespaceStartTag namespaceStartTag = readXmlNamespaceStartTag();
-          xmlStreamer.onNamespaceStart(namespaceStartTag);
+          if (xmlStreamer != null) {
+            xmlStreamer.onNamespaceStart(readXmlNamespaceStartTag());
+          }
           break;
         case ChunkType.XML_START_ELEMENT:
           readXmlNodeStartTag();
@@ -137,10 +152,65 @@ public class BinaryXmlParser {
           }
       }
       buffer.position((int) (beginPos + chunkHeader.getBodySize()));
+      if (resourceTableError != null) {
+        throw new ParserException("Cannot load the resource table", resourceTableError);
+      }
+      if (xmlCursor != null) {
+        if (xmlCursor.isStopped()) {
+          return;
+        }
+        if (xmlCursor.isSkippingChildren()) {
+          skipChildren();
+        }
+      }
       chunkHeader = readChunkHeader();
     }
   }
 
+  /**
+   * @return the table to resolve a reference against, loading it on first use. {@code null} if
+   * references are not resolved or the table cannot be loaded; the error is thrown from
+   * {@link #parse()} after the current event.
+   */
+  ResourceTable getReferenceTable() {
+    if (!resolveReferences) {
+      return null;
+    }
+    if (resourceTable == null && resourceTableProvider != null && resourceTableError == null) {
+      try {
+        resourceTable = resourceTableProvider.getResourceTable();
+      } catch (IOException e) {
+        resourceTableError = e;
+      }
+    }
+    return resourceTable;
+  }
+
+  /**
+   * Move past the children of the element that just started, up to its end tag. Only the chunk
+   * headers are read.
+   */
+  private void skipChildren() throws ParserException {
+    int level = 0;
+    while (buffer.remaining() >= 8) {
+      int pos = buffer.position();
+      int chunkType = buffer.getShort(pos) & 0xffff;
+      long chunkSize = buffer.getInt(pos + 4) & 0xffffffffL;
+      if (chunkType == ChunkType.XML_END_ELEMENT) {
+        if (level == 0) {
+          return;
+        }
+        level--;
+      } else if (chunkType == ChunkType.XML_START_ELEMENT) {
+        level++;
+      }
+      if (chunkSize < 8 || chunkSize > buffer.remaining()) {
+        throw new ParserException("Invalid chunk size:" + chunkSize);
+      }
+      buffer.position(pos + (int) chunkSize);
+    }
+  }
+
   private XmlCData readXmlCData() {
     XmlCData xmlCData = new XmlCData();
     int dataRef = buffer.getInt();
@@ -158,64 +228,87 @@ public class BinaryXmlParser {
   }
 
   private XmlNodeEndTag readXmlNodeEndTag() {
-    XmlNodeEndTag xmlNodeEndTag = new XmlNodeEndTag();
     int nsRef = buffer.getInt();
     int nameRef = buffer.getInt();
+    if (xmlCursor != null) {
+      xmlCursor.endTag(nsRef, nameRef);
+      xmlCursorListener.onEndTag(xmlCursor);
+      xmlCursor.afterEndTag();
+    }
+    if (xmlStreamer == null) {
+      return null;
+    }
+    XmlNodeEndTag xmlNodeEndTag = new XmlNodeEndTag();
     if (nsRef > 0) {
       xmlNodeEndTag.setNamespace(stringPool.get(nsRef));
     }
     xmlNodeEndTag.setName(stringPool.get(nameRef));
-    if (xmlStreamer != null) {
-      xmlStreamer.onEndTag(xmlNodeEndTag);
-    }
+    xmlStreamer.onEndTag(xmlNodeEndTag);
     return xmlNodeEndTag;
   }
 
   private XmlNodeStartTag readXmlNodeStartTag() {
+    int begin = buffer.position();
     int nsRef = buffer.getInt();
     int nameRef = buffer.getInt();
-    XmlNodeStartTag xmlNodeStartTag = new XmlNodeStartTag();
-    if (nsRef > 0) {
-      xmlNodeStartTag.setNamespace(stringPool.get(nsRef));
-    }
-    xmlNodeStartTag.setName(stringPool.get(nameRef));
 
     // read attributes.
     // attributeStart and attributeSize are always 20 (0x14)
-    Buffers.readUShort(buffer);
-    Buffers.readUShort(buffer);
+    int attributeStart = Buffers.readUShort(buffer);
+    int attributeSize = Buffers.readUShort(buffer);
     int attributeCount = Buffers.readUShort(buffer);
     Buffers.readUShort(buffer);
     Buffers.readUShort(buffer);
     Buffers.readUShort(buffer);
 
+    if (xmlCursor != null) {
+      xmlCursor.startTag(nsRef, nameRef, begin + attributeStart, attributeSize, attributeCount);
+      xmlCursorListener.onStartTag(xmlCursor);
+    }
+    if (xmlStreamer == null) {
+      return null;
+    }
+
+    XmlNodeStartTag xmlNodeStartTag = new XmlNodeStartTag();
+    if (nsRef > 0) {
+      xmlNodeStartTag.setNamespace(stringPool.get(nsRef));
+    }
+    xmlNodeStartTag.setName(stringPool.get(nameRef));
+
     // read attributes
+    buffer.position(begin + attributeStart);
     Attributes attributes = new Attributes(attributeCount);
     for (int count = 0; count < attributeCount; count++) {
       Attribute attribute = readAttribute();
-      if (xmlStreamer != null) {
-        String value = attribute.toStringValue(resourceTable, locale);
-        if (INT_ATTRIBUTES.contains(attribute.getName()) && Utils.isNumeric(value)) {
-          try {
-            value = getFinalValueAsString(attribute.getName(), value);
-          } catch (Exception ignore) {
-          }
-        }
-        attribute.setValue(value);
-        attributes.set(count, attribute);
-      }
+      ResourceEntity typedValue = attribute.getTypedValue();
+      boolean isReference = attribute.getRawValue() == null
+          && typedValue != null && typedValue.getValue() == null;
+      String value =
+          attribute.toStringValue(isReference ? getReferenceTable() : null, locale);
+      attribute.setValue(formatAttributeValue(attribute.getName(), value));
+      attributes.set(count, attribute);
     }
     xmlNodeStartTag.setAttributes(attributes);
+    xmlStreamer.onStartTag(xmlNodeStartTag);
+    return xmlNodeStartTag;
+  }
 
-    if (xmlStreamer != null) {
-      xmlStreamer.onStartTag(xmlNodeStartTag);
+  /**
+   * Translate the numeric value of a well-known flag attribute, such as configChanges, to its
+   * name. Other values are returned as is.
+   */
+  public static String formatAttributeValue(String attributeName, String value) {
+    if (INT_ATTRIBUTES.contains(attributeName) && Utils.isNumeric(value)) {
+      try {
+        return getFinalValueAsString(attributeName, value);
+      } catch (Exception ignore) {
+      }
     }
-
-    return xmlNodeStartTag;
+    return value;
   }
 
   //trans int attr value to string
-  private String getFinalValueAsString(String attributeName, String str) {
+  private static String getFinalValueAsString(String attributeName, String str) {
     int value = Integer.parseInt(str);
     switch (attributeName) {
       case "screenOrientation":
@@ -326,7 +419,15 @@ public class BinaryXmlParser {
       case ChunkType.XML_START_ELEMENT:
       case ChunkType.XML_END_ELEMENT:
       case ChunkType.XML_CDATA:
-        XmlNodeHeader header = new XmlNodeHeader(chunkType, headerSize, chunkSize);
+        // node headers are consumed before the next one is read, so one instance is reused
+        XmlNodeHeader header = nodeHeader;
+        if (header == null) {
+          header = nodeHeader = new XmlNodeHeader(chunkType, headerSize, chunkSize);
+        } else {
+          header.setChunkType(chunkType);
+          header.setHeaderSize(headerSize);
+          header.setChunkSize(chunkSize);
+        }
         header.setLineNum((int) Buffers.readUInt(buffer));
         header.setCommentRef((int) Buffers.readUInt(buffer));
         buffer.position((int) (begin + headerSize));
@@ -353,7 +454,37 @@ public class BinaryXmlParser {
     return xmlStreamer;
   }
 
+  /**
+   * Load the resource table only once an attribute refers to a resource, for parsers created
+   * without one. Documents without references never load it.
+   */
+  public void setResourceTableProvider(ResourceTableProvider resourceTableProvider) {
+    this.resourceTableProvider = resourceTableProvider;
+  }
+
+  /**
+   * @param resolveReferences
+   *     {@code false} to leave resource references unresolved, as "resourceId:0x7f020000". The
+   *     resource table is then never loaded. Defaults to {@code true}.
+   */
+  public void setResolveReferences(boolean resolveReferences) {
+    this.resolveReferences = resolveReferences;
+  }
+
+  public boolean isResolveReferences() {
+    return resolveReferences;
+  }
+
   public void setXmlStreamer(XmlStreamer xmlStreamer) {
     this.xmlStreamer = xmlStreamer;
   }
+
+  /**
+   * Receive elements through a reusable {@link XmlCursor} instead of, or as well as, the
+   * {@link XmlStreamer}. When only a cursor listener is set, no objects are created per element
+   * or attribute.
+   */
+  public void setXmlCursorListener(XmlCursorListener xmlCursorListener) {
+    this.xmlCursorListener = xmlCursorListener;
+  }
 }
@@ -29,7 +29,6 @@
 package com.jaredrummler.apkparser.parser;
 
 import com.jaredrummler.apkparser.model.CertificateMeta;
-import com.jaredrummler.apkparser.utils.Utils;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
@@ -38,9 +37,11 @@ import java.math.BigInteger;
 import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-
-import javax.security.cert.CertificateException;
-import javax.security.cert.X509Certificate;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
 
 public class CertificateParser {
 
@@ -51,7 +52,13 @@ public class CertificateParser {
   }
 
   public CertificateMeta parse() throws IOException, CertificateException {
-    X509Certificate certificate = X509Certificate.getInstance(Utils.toByteArray(in));
+    // the signature block is a PKCS#7 SignedData; the signer's certificate comes first.
+    CertificateFactory factory = CertificateFactory.getInstance("X.509");
+    Collection<? extends Certificate> certificates = factory.generateCertificates(in);
+    if (certificates.isEmpty()) {
+      throw new CertificateException("no certificate in signature block");
+    }
+    X509Certificate certificate = (X509Certificate) certificates.iterator().next();
     CertificateMeta.Builder builder = CertificateMeta.newCertificateMeta();
     byte[] bytes = certificate.getEncoded();
     String certMd5 = md5Digest(bytes);
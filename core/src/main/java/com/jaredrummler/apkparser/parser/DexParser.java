@@ -31,7 +31,6 @@ package com.jaredrummler.apkparser.parser;
 import com.jaredrummler.apkparser.exception.ParserException;
 import com.jaredrummler.apkparser.model.DexClass;
 import com.jaredrummler.apkparser.model.DexInfo;
-import com.jaredrummler.apkparser.struct.StringPool;
 import com.jaredrummler.apkparser.struct.dex.DexClassStruct;
 import com.jaredrummler.apkparser.struct.dex.DexHeader;
 import com.jaredrummler.apkparser.utils.Buffers;
@@ -44,6 +43,9 @@ public class DexParser {
   private static final int NO_INDEX = 0xffffffff;
 
   private final ByteBuffer buffer;
+  private long stringIdsOff;
+  private int[] typeIds;
+  private String[] types;
 
   public DexParser(ByteBuffer buffer) {
     this.buffer = buffer.duplicate();
@@ -51,6 +53,51 @@ public class DexParser {
   }
 
   public DexInfo parse() throws ParserException {
+    DexHeader header = parseHeader();
+    if (header == null) {
+      return null;
+    }
+
+    buffer.position((int) header.headerSize);
+
+    // read types
+    stringIdsOff = header.stringIdsOff;
+    typeIds = readTypes(header.typeIdsOff, header.typeIdsSize);
+
+    // read classes
+    DexClassStruct[] dexClassStructs = readClass(header.classDefsOff, header.classDefsSize);
+
+    // only the type descriptors used by class definitions are decoded, the rest of the string
+    // table (method names, field names, etc.) is never touched.
+    types = new String[typeIds.length];
+
+    int numClasses = dexClassStructs.length;
+    DexClass[] dexClasses = new DexClass[numClasses];
+    for (int i = 0; i < numClasses; i++) {
+      DexClass.Builder b = DexClass.newDexClass();
+      DexClassStruct dexClassStruct = dexClassStructs[i];
+      b.classType(getType(dexClassStruct.classIdx));
+      if (dexClassStruct.superclassIdx != NO_INDEX) {
+        b.superClass(getType(dexClassStruct.superclassIdx));
+      }
+      b.accessFlags(dexClassStruct.accessFlags);
+      dexClasses[i] = b.build();
+    }
+    return new DexInfo(dexClasses, header);
+  }
+
+  /**
+   * Parse only the header of the dex file, which holds the string, type, field, method and class
+   * counts. The buffer only needs to hold the first {@link DexHeader#HEADER_SIZE} bytes.
+   *
+   * @return the header, or {@code null} if the buffer does not start with the dex magic.
+   * @throws ParserException
+   *     if the header is truncated or the dex version is not supported.
+   */
+  public DexHeader parseHeader() throws ParserException {
+    if (buffer.remaining() < DexHeader.HEADER_SIZE) {
+      throw new ParserException("Dex header is truncated");
+    }
     // read magic
     String magic = new String(Buffers.readBytes(buffer, 8));
     if (!magic.startsWith("dex\n")) {
@@ -63,7 +110,6 @@ public class DexParser {
       // and version 013 was used for the M5 releases of the Android platform (February–March 2008)
       throw new ParserException("Dex file version: " + version + " is not supported");
     }
-
     // read header
     buffer.getInt(); // check sum. skip
     Buffers.readBytes(buffer, DexHeader.K_SHA_1_DIGEST_LEN); // signature skip
@@ -89,39 +135,18 @@ public class DexParser {
     builder.dataSize(buffer.getInt());
     builder.dataOff(Buffers.readUInt(buffer));
     builder.version(version);
-    DexHeader header = builder.build();
-
-    buffer.position((int) header.headerSize);
-
-    // read string pool
-    long[] stringOffsets = readStringPool(header.stringIdsOff, header.stringIdsSize);
-
-    // read types
-    int[] typeIds = readTypes(header.typeIdsOff, header.typeIdsSize);
-
-    // read classes
-    DexClassStruct[] dexClassStructs = readClass(header.classDefsOff, header.classDefsSize);
-
-    StringPool stringpool = readStrings(stringOffsets);
+    return builder.build();
+  }
 
-    String[] types = new String[typeIds.length];
-    for (int i = 0; i < typeIds.length; i++) {
-      types[i] = stringpool.get(typeIds[i]);
+  private String getType(int typeIdx) throws ParserException {
+    String type = types[typeIdx];
+    if (type == null) {
+      long stringDataOff = Buffers.readUInt(buffer, (int) (stringIdsOff + typeIds[typeIdx] * 4L));
+      buffer.position((int) stringDataOff);
+      type = readString();
+      types[typeIdx] = type;
     }
-
-    int numClasses = dexClassStructs.length;
-    DexClass[] dexClasses = new DexClass[numClasses];
-    for (int i = 0; i < numClasses; i++) {
-      DexClass.Builder b = DexClass.newDexClass();
-      DexClassStruct dexClassStruct = dexClassStructs[i];
-      b.classType(types[dexClassStruct.classIdx]);
-      if (dexClassStruct.superclassIdx != NO_INDEX) {
-        b.superClass(types[dexClassStruct.superclassIdx]);
-      }
-      b.accessFlags(dexClassStruct.accessFlags);
-      dexClasses[i] = b.build();
-    }
-    return new DexInfo(dexClasses, header);
+    return type;
   }
 
   private DexClassStruct[] readClass(long classDefsOff, int classDefsSize) {
@@ -153,44 +178,29 @@ public class DexParser {
     return typeIds;
   }
 
-  private StringPool readStrings(long[] offsets) throws ParserException {
-    // read strings.
-    // buffer some apk, the strings' offsets may not well ordered. we sort it first
-    StringPoolEntry[] entries = new StringPoolEntry[offsets.length];
-    for (int i = 0; i < offsets.length; i++) {
-      entries[i] = new StringPoolEntry(i, offsets[i]);
-    }
-    String lastStr = null;
-    long lastOffset = -1;
-    StringPool stringpool = new StringPool(offsets.length);
-    for (StringPoolEntry entry : entries) {
-      if (entry.offset == lastOffset) {
-        stringpool.set(entry.index, lastStr);
-        continue;
-      }
-      buffer.position((int) entry.offset);
-      lastOffset = entry.offset;
-      String str = readString();
-      lastStr = str;
-      stringpool.set(entry.index, str);
-    }
-    return stringpool;
-  }
-
-  private long[] readStringPool(long stringIdsOff, int stringIdsSize) {
-    buffer.position((int) stringIdsOff);
-    long offsets[] = new long[stringIdsSize];
-    for (int i = 0; i < stringIdsSize; i++) {
-      offsets[i] = Buffers.readUInt(buffer);
-    }
-
-    return offsets;
-  }
-
+  /**
+   * Read a string_data_item: the utf-16 length followed by MUTF-8 encoded bytes.
+   */
   private String readString() throws ParserException {
     // the length is char len, not byte len
     int strLen = readVarInts();
-    return Buffers.readString(buffer, strLen);
+    char[] chars = new char[strLen];
+    for (int i = 0; i < strLen; i++) {
+      int a = buffer.get() & 0xff;
+      if (a < 0x80) {
+        chars[i] = (char) a;
+      } else if ((a & 0xe0) == 0xc0) {
+        int b = buffer.get() & 0xff;
+        chars[i] = (char) (((a & 0x1f) << 6) | (b & 0x3f));
+      } else if ((a & 0xf0) == 0xe0) {
+        int b = buffer.get() & 0xff;
+        int c = buffer.get() & 0xff;
+        chars[i] = (char) (((a & 0x0f) << 12) | ((b & 0x3f) << 6) | (c & 0x3f));
+      } else {
+        throw new ParserException("Bad MUTF-8 byte: 0x" + Integer.toHexString(a));
+      }
+    }
+    return new String(chars);
   }
 
   private int readVarInts() throws ParserException {
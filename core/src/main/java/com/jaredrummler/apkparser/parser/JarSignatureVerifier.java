@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser.parser;
+
+import com.jaredrummler.apkparser.ApkParser.ApkSignStatus;
+import com.jaredrummler.apkparser.exception.ParserException;
+import com.jaredrummler.apkparser.struct.AndroidConstants;
+import com.jaredrummler.apkparser.utils.ParseUtils;
+import com.jaredrummler.apkparser.utils.Utils;
+import com.jaredrummler.apkparser.utils.ZipArchive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarFile;
+
+/**
+ * Verifies the JAR signature (APK signature scheme v1) of an APK.
+ *
+ * <p>The signature files (META-INF/*.SF and their signature blocks) are checked against
+ * META-INF/MANIFEST.MF by {@link JarFile}. The digests of the entries are then checked against
+ * the manifest here: every entry is read once, entries can be verified concurrently, and
+ * verification stops at the first entry that does not match.</p>
+ */
+public class JarSignatureVerifier {
+
+  private static final String MANIFEST = "META-INF/MANIFEST.MF";
+  private static final String DIGEST_SUFFIX = "-digest";
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final ZipArchive archive;
+
+  // set once an entry does not match, or reading one failed
+  private volatile int status = ApkSignStatus.SIGNED;
+  private volatile IOException error;
+
+  /**
+   * @param archive
+   *     the opened APK file. It must stay open until {@link #verify(Executor)} returns.
+   */
+  public JarSignatureVerifier(ZipArchive archive) {
+    this.archive = archive;
+  }
+
+  /**
+   * @param executor
+   *     the executor to verify the entries on, or {@code null} to verify them one after another
+   *     on the calling thread.
+   * @return One of {@link ApkSignStatus#SIGNED}, {@link ApkSignStatus#NOT_SIGNED} or
+   * {@link ApkSignStatus#INCORRECT}
+   * @throws IOException
+   *     if reading the APK file failed.
+   */
+  public int verify(Executor executor) throws IOException {
+    ZipArchive.Entry manifestEntry = archive.getEntry(MANIFEST);
+    if (manifestEntry == null) {
+      return ApkSignStatus.NOT_SIGNED;
+    }
+    boolean hasSignatureFile = false;
+    for (String name : archive.getEntryNames(AndroidConstants.META_PREFIX)) {
+      if (name.regionMatches(true, name.length() - 3, ".SF", 0, 3)) {
+        hasSignatureFile = true;
+        break;
+      }
+    }
+    if (!hasSignatureFile) {
+      return ApkSignStatus.NOT_SIGNED;
+    }
+    if (!verifySignatureFiles(manifestEntry)) {
+      return ApkSignStatus.INCORRECT;
+    }
+
+    Map<String, List<Digest>> digests =
+        parseManifest(Utils.toByteArray(archive.getInputStream(manifestEntry)));
+    // entries that are not in the manifest are not signed, look up only the ones that are
+    List<ZipArchive.Entry> signed = new ArrayList<>(digests.size());
+    for (String name : digests.keySet()) {
+      ZipArchive.Entry entry = archive.getEntry(name);
+      if (entry != null && !entry.isDirectory()) {
+        signed.add(entry);
+      }
+    }
+    if (executor == null) {
+      for (ZipArchive.Entry entry : signed) {
+        verifyEntry(entry, digests.get(entry.getName()));
+        if (error != null) {
+          throw error;
+        }
+        if (status != ApkSignStatus.SIGNED) {
+          break;
+        }
+      }
+      return status;
+    }
+    return verifyConcurrently(signed, digests, executor);
+  }
+
+  /**
+   * @return {@code false} if a signature file does not match its signature block or the
+   * manifest.
+   */
+  private boolean verifySignatureFiles(ZipArchive.Entry manifestEntry) throws IOException {
+    JarFile jarFile = new JarFile(archive.getFile(), true);
+    try {
+      // the signature files are checked once the first entry is opened
+      jarFile.getInputStream(jarFile.getEntry(manifestEntry.getName())).close();
+      return true;
+    } catch (SecurityException e) {
+      return false;
+    } finally {
+      jarFile.close();
+    }
+  }
+
+  private int verifyConcurrently(List<ZipArchive.Entry> entries,
+                                 final Map<String, List<Digest>> digests, Executor executor)
+      throws IOException {
+    if (entries.isEmpty()) {
+      return status;
+    }
+    // start with the largest entries, so that the threads finish at about the same time
+    entries = new ArrayList<>(entries);
+    Collections.sort(entries, new Comparator<ZipArchive.Entry>() {
+      @Override public int compare(ZipArchive.Entry lhs, ZipArchive.Entry rhs) {
+        return lhs.getSize() > rhs.getSize() ? -1 : lhs.getSize() == rhs.getSize() ? 0 : 1;
+      }
+    });
+    // released once every entry is verified, or as soon as one fails
+    final CountDownLatch done = new CountDownLatch(1);
+    final AtomicInteger remaining = new AtomicInteger(entries.size());
+    for (final ZipArchive.Entry entry : entries) {
+      executor.execute(new Runnable() {
+        @Override public void run() {
+          try {
+            if (status == ApkSignStatus.SIGNED && error == null) {
+              verifyEntry(entry, digests.get(entry.getName()));
+            }
+          } finally {
+            if (remaining.decrementAndGet() == 0 || status != ApkSignStatus.SIGNED
+                || error != null) {
+              done.countDown();
+            }
+          }
+        }
+      });
+    }
+    try {
+      done.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while verifying the APK signature");
+    }
+    if (status == ApkSignStatus.SIGNED && error != null) {
+      throw error;
+    }
+    return status;
+  }
+
+  /**
+   * Check the digests of an entry. Sets {@link #status} if they do not match, and {@link #error}
+   * if the entry cannot be read.
+   */
+  private void verifyEntry(ZipArchive.Entry entry, List<Digest> digests) {
+    MessageDigest[] messageDigests = new MessageDigest[digests.size()];
+    for (int i = 0; i < messageDigests.length; i++) {
+      messageDigests[i] = digests.get(i).newMessageDigest();
+    }
+    try {
+      InputStream in = archive.getInputStream(entry);
+      try {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+          if (status != ApkSignStatus.SIGNED) {
+            // another entry did not match
+            return;
+          }
+          for (MessageDigest messageDigest : messageDigests) {
+            messageDigest.update(buffer, 0, count);
+          }
+        }
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      if (status == ApkSignStatus.SIGNED) {
+        error = e;
+      }
+      return;
+    }
+    for (int i = 0; i < messageDigests.length; i++) {
+      if (!MessageDigest.isEqual(messageDigests[i].digest(), digests.get(i).expected)) {
+        status = ApkSignStatus.INCORRECT;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Parse the entry digests of a manifest.
+   *
+   * @return the supported digests of every entry with at least one, by entry name.
+   */
+  static Map<String, List<Digest>> parseManifest(byte[] manifest) throws ParserException {
+    Map<String, List<Digest>> digests = new HashMap<>();
+    String name = null;
+    List<Digest> sectionDigests = new ArrayList<>(1);
+    List<String> lines = readLines(manifest);
+    // a blank line at the end closes the last section
+    lines.add("");
+    for (String line : lines) {
+      if (line.isEmpty()) {
+        if (name != null && !sectionDigests.isEmpty()) {
+          digests.put(name, sectionDigests);
+        }
+        sectionDigests = new ArrayList<>(1);
+        name = null;
+        continue;
+      }
+      int colon = line.indexOf(": ");
+      if (colon == -1) {
+        throw new ParserException("Invalid manifest line: " + line);
+      }
+      String key = line.substring(0, colon);
+      String value = line.substring(colon + 2);
+      if (key.equalsIgnoreCase("Name")) {
+        name = value;
+      } else if (key.toLowerCase(Locale.US).endsWith(DIGEST_SUFFIX)) {
+        String algorithm = key.substring(0, key.length() - DIGEST_SUFFIX.length());
+        try {
+          MessageDigest.getInstance(algorithm);
+          sectionDigests.add(new Digest(algorithm, decodeBase64(value)));
+        } catch (NoSuchAlgorithmException e) {
+          // not supported here, like JarFile does not check it either
+        }
+      }
+    }
+    return digests;
+  }
+
+  /**
+   * Split the manifest into lines, joining continuation lines (those starting with a space).
+   */
+  private static List<String> readLines(byte[] manifest) {
+    String text = new String(manifest, ParseUtils.CHARSET_UTF_8);
+    List<String> lines = new ArrayList<>();
+    StringBuilder line = null;
+    int start = 0;
+    int length = text.length();
+    while (start < length) {
+      int end = start;
+      while (end < length && text.charAt(end) != '\r' && text.charAt(end) != '\n') {
+        end++;
+      }
+      if (end > start && text.charAt(start) == ' ' && line != null) {
+        line.append(text, start + 1, end);
+      } else {
+        if (line != null) {
+          lines.add(line.toString());
+        }
+        line = new StringBuilder(text.substring(start, end));
+      }
+      if (end < length && text.charAt(end) == '\r' && end + 1 < length
+          && text.charAt(end + 1) == '\n') {
+        end++;
+      }
+      start = end + 1;
+    }
+    if (line != null) {
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  static byte[] decodeBase64(String s) throws ParserException {
+    byte[] out = new byte[s.length() * 3 / 4];
+    int length = 0;
+    int bits = 0;
+    int bitCount = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      int value;
+      if (c >= 'A' && c <= 'Z') {
+        value = c - 'A';
+      } else if (c >= 'a' && c <= 'z') {
+        value = c - 'a' + 26;
+      } else if (c >= '0' && c <= '9') {
+        value = c - '0' + 52;
+      } else if (c == '+') {
+        value = 62;
+      } else if (c == '/') {
+        value = 63;
+      } else if (c == '=') {
+        break;
+      } else {
+        throw new ParserException("Invalid base64 digest: " + s);
+      }
+      bits = (bits << 6) | value;
+      bitCount += 6;
+      if (bitCount >= 8) {
+        bitCount -= 8;
+        out[length++] = (byte) (bits >> bitCount);
+      }
+    }
+    byte[] result = new byte[length];
+    System.arraycopy(out, 0, result, 0, length);
+    return result;
+  }
+
+  static class Digest {
+
+    final String algorithm;
+    final byte[] expected;
+
+    Digest(String algorithm, byte[] expected) {
+      this.algorithm = algorithm;
+      this.expected = expected;
+    }
+
+    MessageDigest newMessageDigest() {
+      try {
+        return MessageDigest.getInstance(algorithm);
+      } catch (NoSuchAlgorithmException e) {
+        // checked when the manifest was parsed
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
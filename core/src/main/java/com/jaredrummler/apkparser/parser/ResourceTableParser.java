@@ -40,6 +40,7 @@ import com.jaredrummler.apkparser.utils.ParseUtils;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.HashSet;
 import java.util.Locale;
 import java.util.Set;
@@ -98,10 +99,11 @@ public class ResourceTableParser {
         case ChunkType.TABLE_TYPE_SPEC:
           long typeSpecChunkBegin = buffer.position();
           TypeSpecHeader typeSpecHeader = (TypeSpecHeader) chunkHeader;
-          long[] entryFlags = new long[(int) typeSpecHeader.getEntryCount()];
-          for (int i = 0; i < typeSpecHeader.getEntryCount(); i++) {
-            entryFlags[i] = Buffers.readUInt(buffer);
-          }
+          // the entry flags, read in place
+          ByteBuffer entryFlagData = buffer.slice();
+          entryFlagData.order(ByteOrder.LITTLE_ENDIAN);
+          IntBuffer entryFlags = entryFlagData.asIntBuffer();
+          entryFlags.limit((int) typeSpecHeader.getEntryCount());
 
           TypeSpec typeSpec = new TypeSpec(typeSpecHeader);
 
@@ -115,18 +117,20 @@ public class ResourceTableParser {
         case ChunkType.TABLE_TYPE:
           long typeChunkBegin = buffer.position();
           TypeHeader typeHeader = (TypeHeader) chunkHeader;
-          // read offsets table
-          long[] offsets = new long[(int) typeHeader.getEntryCount()];
-          for (int i = 0; i < typeHeader.getEntryCount(); i++) {
-            offsets[i] = Buffers.readUInt(buffer);
-          }
+          // the offsets table, read in place
+          ByteBuffer offsetData = buffer.slice();
+          offsetData.order(ByteOrder.LITTLE_ENDIAN);
+          IntBuffer offsets = offsetData.asIntBuffer();
+          offsets.limit((int) typeHeader.getEntryCount());
 
           Type type = new Type(typeHeader);
           type.setName(resourcePackage.getTypeStringPool().get(typeHeader.getId() - 1));
           long entryPos =
               typeChunkBegin + typeHeader.getEntriesStart() - typeHeader.getHeaderSize();
-          buffer.position((int) entryPos);
-          ByteBuffer b = buffer.slice();
+          ByteBuffer b = buffer.duplicate();
+          b.limit((int) (typeChunkBegin + typeHeader.getBodySize()));
+          b.position((int) entryPos);
+          b = b.slice();
           b.order(ByteOrder.LITTLE_ENDIAN);
           type.setBuffer(b);
           type.setKeyStringPool(resourcePackage.getKeyStringPool());
@@ -26,21 +26,24 @@
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
-package com.jaredrummler.apkparser.struct;
+package com.jaredrummler.apkparser.parser;
 
-public class StringPool {
+import com.jaredrummler.apkparser.struct.resource.ResourceTable;
 
-  private String[] pool;
+import java.io.IOException;
 
-  public StringPool(int poolSize) {
-    pool = new String[poolSize];
-  }
-
-  public String get(int idx) {
-    return pool[idx];
-  }
+/**
+ * Supplies the resource table to resolve references against, so that it is only parsed once a
+ * reference actually needs resolving.
+ *
+ * @see BinaryXmlParser#setResourceTableProvider(ResourceTableProvider)
+ */
+public interface ResourceTableProvider {
 
-  public void set(int idx, String value) {
-    pool[idx] = value;
-  }
+  /**
+   * @return the resource table. Called at most once per parse.
+   * @throws IOException
+   *     if the resource table cannot be parsed
+   */
+  ResourceTable getResourceTable() throws IOException;
 }
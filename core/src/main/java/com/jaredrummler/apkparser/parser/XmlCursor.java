@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser.parser;
+
+import com.jaredrummler.apkparser.struct.ResourceEntity;
+import com.jaredrummler.apkparser.struct.ResValue;
+import com.jaredrummler.apkparser.struct.StringPool;
+import com.jaredrummler.apkparser.struct.resource.ResourceTable;
+import com.jaredrummler.apkparser.utils.ParseUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * A view of the current element of a binary xml file, reused for every element.
+ *
+ * <p>Attributes are read straight from the file as primitives: the string pool index of the
+ * name, the data type and the raw data. Strings come from the document's string pool and
+ * {@link #getAttributeValue(int)} formats a value the way {@link XmlStreamer}s see it, but only
+ * when called.</p>
+ *
+ * @see XmlCursorListener
+ */
+public final class XmlCursor {
+
+  // struct ResXMLTree_attribute: uint32 ns, uint32 name, uint32 rawValue, Res_value typedValue
+  private static final int ATTRIBUTE_NAME = 4;
+  private static final int ATTRIBUTE_RAW_VALUE = 8;
+  private static final int ATTRIBUTE_TYPED_VALUE = 12;
+
+  private final BinaryXmlParser parser;
+  private final ByteBuffer buffer;
+  private final StringPool stringPool;
+  private final long[] resourceIds;
+  private final String[] resourceNames;
+  private final Locale locale;
+
+  private int depth;
+  private int namespaceRef;
+  private int nameRef;
+  private int attributeStart;
+  private int attributeSize;
+  private int attributeCount;
+  private boolean skipChildren;
+  private boolean stopped;
+
+  XmlCursor(BinaryXmlParser parser, ByteBuffer buffer, StringPool stringPool, long[] resourceIds,
+            String[] resourceNames, Locale locale) {
+    this.parser = parser;
+    this.buffer = buffer;
+    this.stringPool = stringPool;
+    this.resourceIds = resourceIds;
+    this.resourceNames = resourceNames;
+    this.locale = locale;
+  }
+
+  void startTag(int namespaceRef, int nameRef, int attributeStart, int attributeSize,
+                int attributeCount) {
+    this.depth++;
+    this.namespaceRef = namespaceRef;
+    this.nameRef = nameRef;
+    this.attributeStart = attributeStart;
+    this.attributeSize = attributeSize;
+    this.attributeCount = attributeCount;
+    this.skipChildren = false;
+  }
+
+  void endTag(int namespaceRef, int nameRef) {
+    this.namespaceRef = namespaceRef;
+    this.nameRef = nameRef;
+    this.attributeCount = 0;
+    this.skipChildren = false;
+  }
+
+  void afterEndTag() {
+    this.depth--;
+  }
+
+  /**
+   * @return the nesting depth of the element; the root element is 1.
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  public String getName() {
+    return stringPool.get(nameRef);
+  }
+
+  /**
+   * @return the string pool index of the element name.
+   */
+  public int getNameIndex() {
+    return nameRef;
+  }
+
+  /**
+   * @return the namespace uri of the element, or {@code null} if it has none.
+   */
+  public String getNamespace() {
+    return namespaceRef > 0 ? stringPool.get(namespaceRef) : null;
+  }
+
+  /**
+   * @return the number of attributes of the element. Always 0 in an end tag.
+   */
+  public int getAttributeCount() {
+    return attributeCount;
+  }
+
+  /**
+   * @return the string pool index of the attribute name.
+   */
+  public int getAttributeNameIndex(int index) {
+    return buffer.getInt(attributeOffset(index) + ATTRIBUTE_NAME);
+  }
+
+  public String getAttributeName(int index) {
+    int nameRef = getAttributeNameIndex(index);
+    String name = stringPool.get(nameRef);
+    if (name.isEmpty() && resourceNames != null && nameRef < resourceNames.length) {
+      // some processed apk file make the string pool value empty, if it is a xmlmap attr.
+      name = resourceNames[nameRef];
+    }
+    return name;
+  }
+
+  /**
+   * @return the android attribute resource id of the attribute, e.g. 0x01010003 for
+   * android:name, or 0 if the attribute is not a platform attribute.
+   */
+  public int getAttributeResourceId(int index) {
+    int nameRef = getAttributeNameIndex(index);
+    return resourceIds != null && nameRef < resourceIds.length ? (int) resourceIds[nameRef] : 0;
+  }
+
+  /**
+   * @return the {@link ResValue.ResType} of the attribute value.
+   */
+  public int getAttributeDataType(int index) {
+    return buffer.get(attributeOffset(index) + ATTRIBUTE_TYPED_VALUE + 3) & 0xff;
+  }
+
+  /**
+   * @return the raw data of the attribute value, interpreted according to its data type.
+   */
+  public int getAttributeData(int index) {
+    return buffer.getInt(attributeOffset(index) + ATTRIBUTE_TYPED_VALUE + 4);
+  }
+
+  /**
+   * @return the original string value of the attribute, or {@code null} if it only has a typed
+   * value.
+   */
+  public String getAttributeRawValue(int index) {
+    int rawValueRef = buffer.getInt(attributeOffset(index) + ATTRIBUTE_RAW_VALUE);
+    return rawValueRef > 0 ? stringPool.get(rawValueRef) : null;
+  }
+
+  /**
+   * @return the index of the attribute with the given name, ignoring the namespace, or -1.
+   */
+  public int indexOfAttribute(String name) {
+    for (int i = 0; i < attributeCount; i++) {
+      if (name.equals(getAttributeName(i))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Format the value of an attribute. References are resolved against the resource table and
+   * well-known flag attributes, such as configChanges, are translated to their names.
+   */
+  public String getAttributeValue(int index) {
+    String value = getAttributeRawValue(index);
+    if (value == null) {
+      ResourceEntity entity = ParseUtils.readResValue(buffer,
+          attributeOffset(index) + ATTRIBUTE_TYPED_VALUE, stringPool);
+      if (entity == null) {
+        value = "";
+      } else {
+        // only references need the resource table
+        ResourceTable resourceTable = entity.getValue() == null ? parser.getReferenceTable() : null;
+        value = entity.toStringValue(resourceTable, locale);
+      }
+    }
+    return BinaryXmlParser.formatAttributeValue(getAttributeName(index), value);
+  }
+
+  /**
+   * @return the formatted value of the attribute with the given name, or {@code null} if the
+   * element has no such attribute.
+   */
+  public String getAttributeValue(String name) {
+    int index = indexOfAttribute(name);
+    return index == -1 ? null : getAttributeValue(index);
+  }
+
+  /**
+   * @return the value of an integer or boolean attribute, or {@code defaultValue} if the element
+   * has no such attribute or its value is not an integer.
+   */
+  public int getAttributeInt(String name, int defaultValue) {
+    int index = indexOfAttribute(name);
+    if (index == -1) {
+      return defaultValue;
+    }
+    int type = getAttributeDataType(index);
+    if (type < ResValue.ResType.FIRST_INT || type > ResValue.ResType.LAST_INT) {
+      return defaultValue;
+    }
+    return getAttributeData(index);
+  }
+
+  /**
+   * @return the value of a boolean attribute, or {@code defaultValue} if the element has no such
+   * attribute or its value is not a boolean.
+   */
+  public boolean getAttributeBoolean(String name, boolean defaultValue) {
+    int index = indexOfAttribute(name);
+    if (index == -1 || getAttributeDataType(index) != ResValue.ResType.INT_BOOLEAN) {
+      return defaultValue;
+    }
+    return getAttributeData(index) != 0;
+  }
+
+  /**
+   * Skip the children of the element that just started; the next event is its end tag. Only
+   * chunk headers are read while skipping. Applies to {@link XmlStreamer}s on the same parser as
+   * well. Only valid in {@link XmlCursorListener#onStartTag(XmlCursor)}.
+   */
+  public void skipChildren() {
+    skipChildren = true;
+  }
+
+  /**
+   * Stop parsing after the current event.
+   */
+  public void stop() {
+    stopped = true;
+  }
+
+  boolean isSkippingChildren() {
+    return skipChildren;
+  }
+
+  boolean isStopped() {
+    return stopped;
+  }
+
+  private int attributeOffset(int index) {
+    if (index < 0 || index >= attributeCount) {
+      throw new IndexOutOfBoundsException("index=" + index + ", count=" + attributeCount);
+    }
+    return attributeStart + index * attributeSize;
+  }
+
+}
@@ -28,14 +28,15 @@
 
 package com.jaredrummler.apkparser.parser;
 
-public class StringPoolEntry {
-
-  public final int index;
-  public final long offset;
+/**
+ * Receives the elements of a binary xml file through a reusable {@link XmlCursor}.
+ *
+ * <p>Unlike {@link XmlStreamer}, no objects are created per element or attribute. The cursor is
+ * only valid during the callback; copy out anything that is needed later.</p>
+ */
+public interface XmlCursorListener {
 
-  public StringPoolEntry(int index, long offset) {
-    this.index = index;
-    this.offset = offset;
-  }
+  void onStartTag(XmlCursor cursor);
 
+  void onEndTag(XmlCursor cursor);
 }
@@ -31,39 +31,73 @@ package com.jaredrummler.apkparser.parser;
 import com.jaredrummler.apkparser.struct.xml.*;
 import com.jaredrummler.apkparser.utils.xml.XmlEscaper;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.List;
 
+/**
+ * Translates binary xml events to xml text.
+ *
+ * <p>The text is written to a {@link Writer} as the events arrive. {@link XmlStreamer} methods
+ * cannot throw, so the first {@link IOException} from the writer is kept and later output is
+ * dropped; check {@link #getIOException()} once parsing is done.</p>
+ */
 public class XmlTranslator implements XmlStreamer {
 
-  private StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+  private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n";
+
+  private final Writer out;
+  private final StringWriter stringWriter;
+  private IOException ioException;
   private XmlNamespaces namespaces = new XmlNamespaces();
   private boolean isLastStartTag;
   private int shift;
 
+  /**
+   * Create a translator that keeps the xml in memory, see {@link #getXml()}.
+   */
+  public XmlTranslator() {
+    this.stringWriter = new StringWriter();
+    this.out = stringWriter;
+    write(XML_DECLARATION);
+  }
+
+  /**
+   * Create a translator that writes the xml to {@code out}. The writer is not flushed or closed.
+   * Wrap unbuffered writers in a {@link java.io.BufferedWriter}.
+   */
+  public XmlTranslator(Writer out) {
+    this.stringWriter = null;
+    this.out = out;
+    write(XML_DECLARATION);
+  }
+
   @Override public void onStartTag(XmlNodeStartTag xmlNodeStartTag) {
     if (isLastStartTag) {
-      sb.append(">\n");
+      write(">\n");
     }
     appendShift(shift++);
-    sb.append('<');
+    write('<');
     if (xmlNodeStartTag.getNamespace() != null) {
       String prefix = namespaces.getPrefixViaUri(xmlNodeStartTag.getNamespace());
       if (prefix != null) {
-        sb.append(prefix).append(':');
+        write(prefix);
       } else {
-        sb.append(xmlNodeStartTag.getNamespace()).append(':');
+        write(xmlNodeStartTag.getNamespace());
       }
+      write(':');
     }
-    sb.append(xmlNodeStartTag.getName());
+    write(xmlNodeStartTag.getName());
 
     List<XmlNamespaces.XmlNamespace> nps = namespaces.consumeNameSpaces();
     if (!nps.isEmpty()) {
       for (XmlNamespaces.XmlNamespace np : nps) {
-        sb.append(" xmlns:")
-            .append(np.prefix)
-            .append("=\"")
-            .append(np.uri)
-            .append("\"");
+        write(" xmlns:");
+        write(np.prefix);
+        write("=\"");
+        write(np.uri);
+        write('"');
       }
     }
     isLastStartTag = true;
@@ -74,38 +108,48 @@ public class XmlTranslator implements XmlStreamer {
   }
 
   private void onAttribute(Attribute attribute) {
-    sb.append(' ');
+    write(' ');
     String namespace = this.namespaces.getPrefixViaUri(attribute.getNamespace());
     if (namespace == null) {
       namespace = attribute.getNamespace();
     }
     if (namespace != null && !namespace.isEmpty()) {
-      sb.append(namespace).append(':');
+      write(namespace);
+      write(':');
     }
-    String escapedFinalValue = XmlEscaper.escapeXml10(attribute.getValue());
-    sb.append(attribute.getName()).append('=').append('"')
-        .append(escapedFinalValue).append('"');
+    write(attribute.getName());
+    write("=\"");
+    if (ioException == null) {
+      try {
+        XmlEscaper.escapeXml10(attribute.getValue(), out);
+      } catch (IOException e) {
+        ioException = e;
+      }
+    }
+    write('"');
   }
 
   @Override public void onEndTag(XmlNodeEndTag xmlNodeEndTag) {
     --shift;
     if (isLastStartTag) {
-      sb.append(" />\n");
+      write(" />\n");
     } else {
       appendShift(shift);
-      sb.append("</");
+      write("</");
       if (xmlNodeEndTag.getNamespace() != null) {
-        sb.append(xmlNodeEndTag.getNamespace()).append(':');
+        write(xmlNodeEndTag.getNamespace());
+        write(':');
       }
-      sb.append(xmlNodeEndTag.getName());
-      sb.append(">\n");
+      write(xmlNodeEndTag.getName());
+      write(">\n");
     }
     isLastStartTag = false;
   }
 
   @Override public void onCData(XmlCData xmlCData) {
     appendShift(shift);
-    sb.append(xmlCData.getValue()).append('\n');
+    write(xmlCData.getValue());
+    write('\n');
     isLastStartTag = false;
   }
 
@@ -119,11 +163,41 @@ public class XmlTranslator implements XmlStreamer {
 
   private void appendShift(int shift) {
     for (int i = 0; i < shift; i++) {
-      sb.append('\t');
+      write('\t');
     }
   }
 
+  private void write(String s) {
+    if (ioException == null) {
+      try {
+        out.write(String.valueOf(s));
+      } catch (IOException e) {
+        ioException = e;
+      }
+    }
+  }
+
+  private void write(char c) {
+    if (ioException == null) {
+      try {
+        out.write(c);
+      } catch (IOException e) {
+        ioException = e;
+      }
+    }
+  }
+
+  /**
+   * @return the first error thrown by the writer, or {@code null} if all output was written.
+   */
+  public IOException getIOException() {
+    return ioException;
+  }
+
+  /**
+   * @return the xml, or {@code null} if this translator writes to a caller supplied writer.
+   */
   public String getXml() {
-    return sb.toString();
+    return stringWriter == null ? null : stringWriter.toString();
   }
 }
@@ -30,6 +30,9 @@ package com.jaredrummler.apkparser.struct;
 
 public class ResValue {
 
+  // Size of a Res_value structure in bytes.
+  public static final int SIZE = 8;
+
   // Number of bytes in this structure. uint16; always 8
   private int size;
   // Always set to 0. uint8
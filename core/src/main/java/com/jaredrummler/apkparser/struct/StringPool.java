@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser.struct;
+
+import com.jaredrummler.apkparser.utils.ParseUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * String pool of a binary xml file, resource table or dex file.
+ *
+ * <p>A pool created from string data only keeps the offsets and the backing buffer. Each string is
+ * decoded the first time it is requested and cached afterwards.</p>
+ */
+public class StringPool {
+
+  private final String[] pool;
+  private final ByteBuffer data;
+  private final IntBuffer offsets;
+  private final boolean utf8;
+
+  public StringPool(int poolSize) {
+    this.pool = new String[poolSize];
+    this.data = null;
+    this.offsets = null;
+    this.utf8 = false;
+  }
+
+  /**
+   * @param data
+   *     the strings data, little endian.
+   * @param offsets
+   *     the offset of each string in {@code data}.
+   * @param utf8
+   *     {@code true} if strings are encoded in UTF-8, otherwise UTF-16.
+   */
+  public StringPool(ByteBuffer data, int[] offsets, boolean utf8) {
+    this(data, IntBuffer.wrap(offsets), utf8);
+  }
+
+  /**
+   * @param data
+   *     the strings data, little endian.
+   * @param offsets
+   *     the offset of each string in {@code data}, e.g. a view of the offsets in the file.
+   * @param utf8
+   *     {@code true} if strings are encoded in UTF-8, otherwise UTF-16.
+   */
+  public StringPool(ByteBuffer data, IntBuffer offsets, boolean utf8) {
+    this.pool = new String[offsets.remaining()];
+    this.data = data;
+    this.offsets = offsets.slice();
+    this.utf8 = utf8;
+  }
+
+  public String get(int idx) {
+    String value = pool[idx];
+    if (value == null && data != null) {
+      value = ParseUtils.readString(data, offsets.get(idx), utf8);
+      pool[idx] = value;
+    }
+    return value;
+  }
+
+  public void set(int idx, String value) {
+    pool[idx] = value;
+  }
+
+  public int size() {
+    return pool.length;
+  }
+}
@@ -31,6 +31,8 @@ package com.jaredrummler.apkparser.struct.dex;
 public class DexHeader {
 
   public static final int K_SHA_1_DIGEST_LEN = 20;
+  /** The size of the header of dex version 035 and later. */
+  public static final int HEADER_SIZE = 0x70;
 
   public static Builder newDexHeader() {
     return new Builder();
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jaredrummler.apkparser.struct.resource;
+
+import com.jaredrummler.apkparser.utils.Utils;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of resource ids resolved to their string value for a
+ * locale. Each {@link ResourceTable} has its own cache, so decoding many xml files of the same APK
+ * resolves each {@code @string}, {@code @dimen}, {@code @color}, etc. only once.
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class ResolvedResourceCache {
+
+  public static final int DEFAULT_MAX_SIZE = 4096;
+
+  private final LinkedHashMap<Key, String> map;
+  private final int maxSize;
+  private long hitCount;
+  private long missCount;
+
+  public ResolvedResourceCache() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * @param maxSize
+   *     the maximum number of resolved values to keep.
+   */
+  public ResolvedResourceCache(final int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize <= 0");
+    }
+    this.maxSize = maxSize;
+    this.map = new LinkedHashMap<Key, String>(16, 0.75f, true) {
+
+      @Override protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * @return the cached value, or {@code null} if the resource was not resolved yet.
+   */
+  public synchronized String get(long resourceId, Locale locale) {
+    String value = map.get(new Key(resourceId, locale));
+    if (value != null) {
+      hitCount++;
+    } else {
+      missCount++;
+    }
+    return value;
+  }
+
+  public synchronized void put(long resourceId, Locale locale, String value) {
+    if (value != null) {
+      map.put(new Key(resourceId, locale), value);
+    }
+  }
+
+  public synchronized void clear() {
+    map.clear();
+  }
+
+  public synchronized int size() {
+    return map.size();
+  }
+
+  public int maxSize() {
+    return maxSize;
+  }
+
+  /**
+   * @return the number of times {@link #get(long, Locale)} returned a value.
+   */
+  public synchronized long hitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return the number of times {@link #get(long, Locale)} returned {@code null}.
+   */
+  public synchronized long missCount() {
+    return missCount;
+  }
+
+  @Override public synchronized String toString() {
+    long accesses = hitCount + missCount;
+    int hitPercent = accesses != 0 ? (int) (100 * hitCount / accesses) : 0;
+    return "ResolvedResourceCache{" + "maxSize=" + maxSize + ", size=" + map.size() +
+        ", hits=" + hitCount + ", misses=" + missCount + ", hitRate=" + hitPercent + "%}";
+  }
+
+  private static final class Key {
+
+    final long resourceId;
+    final Locale locale;
+
+    Key(long resourceId, Locale locale) {
+      this.resourceId = resourceId;
+      this.locale = locale;
+    }
+
+    @Override public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return resourceId == key.resourceId && Utils.equals(locale, key.locale);
+    }
+
+    @Override public int hashCode() {
+      int result = (int) (resourceId ^ (resourceId >>> 32));
+      return 31 * result + (locale != null ? locale.hashCode() : 0);
+    }
+  }
+
+}
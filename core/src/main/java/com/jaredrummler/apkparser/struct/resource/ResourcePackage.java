@@ -30,13 +30,13 @@ package com.jaredrummler.apkparser.struct.resource;
 
 import com.jaredrummler.apkparser.struct.StringPool;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 
 public class ResourcePackage {
 
+  /** The largest type id a package can declare. Type ids are a single byte in a resource id. */
+  public static final int MAX_TYPE_ID = 0xff;
+
   // the packageName
   private String name;
   private short id;
@@ -50,29 +50,49 @@ public class ResourcePackage {
     this.id = (short) header.getId();
   }
 
-  private Map<Short, TypeSpec> typeSpecMap = new HashMap<>();
-
-  private Map<Short, List<Type>> typesMap = new HashMap<>();
+  // type specs and types indexed by their (unsigned byte) type id.
+  private final TypeSpec[] typeSpecs = new TypeSpec[MAX_TYPE_ID + 1];
+  private final Type[][] types = new Type[MAX_TYPE_ID + 1][];
 
   public void addTypeSpec(TypeSpec typeSpec) {
-    this.typeSpecMap.put(typeSpec.getId(), typeSpec);
+    this.typeSpecs[typeSpec.getId() & MAX_TYPE_ID] = typeSpec;
   }
 
-  public TypeSpec getTypeSpec(Short id) {
-    return this.typeSpecMap.get(id);
+  /**
+   * @param id
+   *     the type id, from 1 to {@link #MAX_TYPE_ID}.
+   * @return the type spec with the given id, or {@code null} if the package has none.
+   */
+  public TypeSpec getTypeSpec(int id) {
+    if (id < 0 || id > MAX_TYPE_ID) {
+      return null;
+    }
+    return this.typeSpecs[id];
   }
 
   public void addType(Type type) {
-    List<Type> types = this.typesMap.get(type.getId());
-    if (types == null) {
-      types = new ArrayList<>();
-      this.typesMap.put(type.getId(), types);
+    int id = type.getId() & MAX_TYPE_ID;
+    Type[] current = this.types[id];
+    if (current == null) {
+      current = new Type[]{type};
+    } else {
+      current = Arrays.copyOf(current, current.length + 1);
+      current[current.length - 1] = type;
     }
-    types.add(type);
-  }
-
-  public List<Type> getTypes(Short id) {
-    return this.typesMap.get(id);
+    this.types[id] = current;
+  }
+
+  /**
+   * @param id
+   *     the type id, from 1 to {@link #MAX_TYPE_ID}.
+   * @return the types (one per configuration) with the given id, or {@code null} if the package
+   * has none. The returned array is shared and must not be modified.
+   */
+  public Type[] getTypes(int id) {
+    if (id < 0 || id > MAX_TYPE_ID) {
+      return null;
+    }
+    return this.types[id];
   }
 
   public String getName() {
@@ -106,20 +126,4 @@ public class ResourcePackage {
   public void setKeyStringPool(StringPool keyStringPool) {
     this.keyStringPool = keyStringPool;
   }
-
-  public Map<Short, TypeSpec> getTypeSpecMap() {
-    return typeSpecMap;
-  }
-
-  public void setTypeSpecMap(Map<Short, TypeSpec> typeSpecMap) {
-    this.typeSpecMap = typeSpecMap;
-  }
-
-  public Map<Short, List<Type>> getTypesMap() {
-    return typesMap;
-  }
-
-  public void setTypesMap(Map<Short, List<Type>> typesMap) {
-    this.typesMap = typesMap;
-  }
 }
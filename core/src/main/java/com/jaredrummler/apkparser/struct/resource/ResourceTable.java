@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser.struct.resource;
+
+import com.jaredrummler.apkparser.struct.ChunkType;
+import com.jaredrummler.apkparser.struct.StringPool;
+import com.jaredrummler.apkparser.utils.IntObjectMap;
+import com.jaredrummler.apkparser.utils.ResourceLoader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The parsed resources.arsc of an APK.
+ *
+ * <p>Once parsed, a resource table is never modified by lookups: entries are decoded with
+ * absolute reads from the underlying buffers. A single table can therefore be shared and resolved
+ * concurrently by multiple threads.</p>
+ */
+public class ResourceTable {
+
+  /** The largest package id a table can declare. Package ids are a single byte in a resource id. */
+  public static final int MAX_PACKAGE_ID = 0xff;
+
+  // packages indexed by their (unsigned byte) package id.
+  private final ResourcePackage[] packages = new ResourcePackage[MAX_PACKAGE_ID + 1];
+  private StringPool stringPool;
+  private ResolvedResourceCache resolvedResourceCache = new ResolvedResourceCache();
+
+  public static IntObjectMap<String> sysStyle = ResourceLoader.loadSystemStyles();
+
+  /**
+   * Merge the resource tables of the APKs of a split install, e.g. base.apk and its config splits,
+   * into one table. The types of a package declared by several tables are combined, so that a
+   * resource of the base resolves to the best configuration of any split. The tables are not
+   * modified and share their types with the merged table.
+   *
+   * @param tables
+   *     the tables, base first
+   * @return the merged table
+   */
+  public static ResourceTable merge(List<ResourceTable> tables) {
+    ResourceTable merged = new ResourceTable();
+    if (tables.isEmpty()) {
+      return merged;
+    }
+    merged.setStringPool(tables.get(0).getStringPool());
+    List<ResourcePackage> packages = new ArrayList<>(tables.size());
+    for (int id = 0; id <= MAX_PACKAGE_ID; id++) {
+      packages.clear();
+      for (ResourceTable table : tables) {
+        if (table.packages[id] != null) {
+          packages.add(table.packages[id]);
+        }
+      }
+      if (packages.size() == 1) {
+        merged.packages[id] = packages.get(0);
+      } else if (packages.size() > 1) {
+        merged.packages[id] = mergePackages(packages);
+      }
+    }
+    return merged;
+  }
+
+  private static ResourcePackage mergePackages(List<ResourcePackage> packages) {
+    ResourcePackage first = packages.get(0);
+    PackageHeader packageHeader = new PackageHeader(ChunkType.TABLE_PACKAGE, 0, 0);
+    packageHeader.setId(first.getId() & MAX_PACKAGE_ID);
+    packageHeader.setName(first.getName());
+    ResourcePackage merged = new ResourcePackage(packageHeader);
+    merged.setTypeStringPool(first.getTypeStringPool());
+    merged.setKeyStringPool(first.getKeyStringPool());
+    for (int id = 0; id <= ResourcePackage.MAX_TYPE_ID; id++) {
+      TypeSpec typeSpec = null;
+      for (ResourcePackage resourcePackage : packages) {
+        TypeSpec other = resourcePackage.getTypeSpec(id);
+        // splits may be built against a newer base with more entries
+        if (other != null
+            && (typeSpec == null || other.getEntryCount() > typeSpec.getEntryCount())) {
+          typeSpec = other;
+        }
+        Type[] types = resourcePackage.getTypes(id);
+        if (types != null) {
+          for (Type type : types) {
+            merged.addType(type);
+          }
+        }
+      }
+      if (typeSpec != null) {
+        merged.addTypeSpec(typeSpec);
+      }
+    }
+    return merged;
+  }
+
+  public void addPackage(ResourcePackage resourcePackage) {
+    this.packages[resourcePackage.getId() & MAX_PACKAGE_ID] = resourcePackage;
+  }
+
+  /**
+   * @param id
+   *     the package id, from 0 to {@link #MAX_PACKAGE_ID}.
+   * @return the package with the given id, or {@code null} if the table has none.
+   */
+  public ResourcePackage getPackage(int id) {
+    if (id < 0 || id > MAX_PACKAGE_ID) {
+      return null;
+    }
+    return this.packages[id];
+  }
+
+  public StringPool getStringPool() {
+    return stringPool;
+  }
+
+  public void setStringPool(StringPool stringPool) {
+    this.stringPool = stringPool;
+  }
+
+  /**
+   * @return the cache of resolved resource values, or {@code null} if caching is disabled.
+   */
+  public ResolvedResourceCache getResolvedResourceCache() {
+    return resolvedResourceCache;
+  }
+
+  /**
+   * Replace the cache of resolved resource values, e.g. to change its size.
+   *
+   * @param resolvedResourceCache
+   *     the new cache, or {@code null} to disable caching.
+   */
+  public void setResolvedResourceCache(ResolvedResourceCache resolvedResourceCache) {
+    this.resolvedResourceCache = resolvedResourceCache;
+  }
+}
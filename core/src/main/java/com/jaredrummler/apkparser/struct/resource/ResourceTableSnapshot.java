@@ -0,0 +1,481 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser.struct.resource;
+
+import com.jaredrummler.apkparser.exception.ParserException;
+import com.jaredrummler.apkparser.struct.ChunkType;
+import com.jaredrummler.apkparser.struct.StringPool;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A binary snapshot of a parsed {@link ResourceTable}, to keep it across runs without parsing
+ * resources.arsc again.
+ *
+ * <p>The snapshot holds the packages, type specs, the entry offsets and entries of every
+ * configuration, and the string pools, with duplicate strings stored once. Every type refers to
+ * its own key and value pools, so tables merged from several APKs keep the strings of each
+ * split. It is laid out so
+ * that a table can be read straight from a memory-mapped file: offsets tables, entries and
+ * strings are used in place, and only the packages and types are created when it is loaded.</p>
+ *
+ * <pre>
+ * ResourceTableSnapshot.write(apkParser.getResourceTable(), file);
+ * ...
+ * ResourceTable resourceTable = ResourceTableSnapshot.map(file);
+ * String label = ParseUtils.getResourceById(0x7f020000, resourceTable, Locale.US);
+ * </pre>
+ */
+public class ResourceTableSnapshot {
+
+  private static final int MAGIC = 0x534e5452; // "RTNS"
+  private static final int VERSION = 2;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  // the largest string length the UTF-8 encoding of a string pool can hold
+  private static final int MAX_UTF8_LENGTH = 0x7fff;
+
+  private ResourceTableSnapshot() {
+  }
+
+  /**
+   * Write a snapshot of the table to a file.
+   *
+   * @param resourceTable
+   *     the table to write
+   * @param file
+   *     the file to write to. Replaced if it exists.
+   * @throws IOException
+   *     if the file cannot be written
+   */
+  public static void write(ResourceTable resourceTable, File file) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      write(resourceTable, out);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Write a snapshot of the table to a stream. The stream is not closed.
+   */
+  public static void write(ResourceTable resourceTable, OutputStream out) throws IOException {
+    Output output = new Output();
+    output.putInt(MAGIC);
+    output.putInt(VERSION);
+    // the pools of all packages and types, each written once and referred to by index
+    Map<StringPool, Integer> pools = new IdentityHashMap<>();
+    List<StringPool> poolList = new ArrayList<>();
+    addStringPool(pools, poolList, resourceTable.getStringPool());
+    for (int id = 0; id <= ResourceTable.MAX_PACKAGE_ID; id++) {
+      ResourcePackage resourcePackage = resourceTable.getPackage(id);
+      if (resourcePackage == null) {
+        continue;
+      }
+      addStringPool(pools, poolList, resourcePackage.getTypeStringPool());
+      addStringPool(pools, poolList, resourcePackage.getKeyStringPool());
+      for (int typeId = 0; typeId <= ResourcePackage.MAX_TYPE_ID; typeId++) {
+        Type[] types = resourcePackage.getTypes(typeId);
+        if (types != null) {
+          for (Type type : types) {
+            addStringPool(pools, poolList, type.getKeyStringPool());
+            addStringPool(pools, poolList, type.getStringPool());
+          }
+        }
+      }
+    }
+    output.putInt(poolList.size());
+    for (StringPool stringPool : poolList) {
+      writeStringPool(output, stringPool);
+    }
+    output.putInt(poolIndex(pools, resourceTable.getStringPool()));
+    int packageCount = 0;
+    for (int id = 0; id <= ResourceTable.MAX_PACKAGE_ID; id++) {
+      if (resourceTable.getPackage(id) != null) {
+        packageCount++;
+      }
+    }
+    output.putInt(packageCount);
+    for (int id = 0; id <= ResourceTable.MAX_PACKAGE_ID; id++) {
+      ResourcePackage resourcePackage = resourceTable.getPackage(id);
+      if (resourcePackage != null) {
+        writePackage(output, resourcePackage, pools);
+      }
+    }
+    out.write(output.buffer.array(), 0, output.buffer.position());
+  }
+
+  /**
+   * Memory-map a snapshot. The file must not be modified while the table is in use.
+   *
+   * @param file
+   *     a file written by {@link #write(ResourceTable, File)}
+   * @return the resource table
+   * @throws IOException
+   *     if the file cannot be read or is not a snapshot
+   */
+  public static ResourceTable map(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Read a snapshot. The table refers to the buffer, which must not be modified while the table
+   * is in use.
+   *
+   * @param buffer
+   *     the snapshot, from the buffer's position
+   * @return the resource table
+   * @throws ParserException
+   *     if the buffer does not hold a snapshot
+   */
+  public static ResourceTable read(ByteBuffer buffer) throws ParserException {
+    buffer = buffer.slice();
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new ParserException("Not a resource table snapshot");
+      }
+      int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new ParserException("Unsupported resource table snapshot version: " + version);
+      }
+      ResourceTable resourceTable = new ResourceTable();
+      StringPool[] pools = new StringPool[buffer.getInt()];
+      for (int i = 0; i < pools.length; i++) {
+        pools[i] = readStringPool(buffer);
+      }
+      resourceTable.setStringPool(readPoolIndex(buffer, pools));
+      int packageCount = buffer.getInt();
+      for (int i = 0; i < packageCount; i++) {
+        resourceTable.addPackage(readPackage(buffer, pools));
+      }
+      return resourceTable;
+    } catch (RuntimeException e) {
+      // truncated or corrupt
+      throw new ParserException("Invalid resource table snapshot", e);
+    }
+  }
+
+  private static void writePackage(Output output, ResourcePackage resourcePackage,
+                                   Map<StringPool, Integer> pools) {
+    output.putInt(resourcePackage.getId());
+    output.putString(resourcePackage.getName());
+    output.putInt(poolIndex(pools, resourcePackage.getTypeStringPool()));
+    output.putInt(poolIndex(pools, resourcePackage.getKeyStringPool()));
+    int typeSpecCount = 0;
+    int typeCount = 0;
+    for (int id = 0; id <= ResourcePackage.MAX_TYPE_ID; id++) {
+      if (resourcePackage.getTypeSpec(id) != null) {
+        typeSpecCount++;
+      }
+      Type[] types = resourcePackage.getTypes(id);
+      if (types != null) {
+        typeCount += types.length;
+      }
+    }
+    output.putInt(typeSpecCount);
+    for (int id = 0; id <= ResourcePackage.MAX_TYPE_ID; id++) {
+      TypeSpec typeSpec = resourcePackage.getTypeSpec(id);
+      if (typeSpec != null) {
+        output.putInt(typeSpec.getId());
+        long[] entryFlags = typeSpec.getEntryFlags();
+        output.putInt(entryFlags.length);
+        for (long flags : entryFlags) {
+          output.putInt((int) flags);
+        }
+      }
+    }
+    output.putInt(typeCount);
+    for (int id = 0; id <= ResourcePackage.MAX_TYPE_ID; id++) {
+      Type[] types = resourcePackage.getTypes(id);
+      if (types == null) {
+        continue;
+      }
+      for (Type type : types) {
+        output.putInt(type.getId());
+        output.putString(type.getLocale().getLanguage());
+        output.putString(type.getLocale().getCountry());
+        output.putInt(poolIndex(pools, type.getKeyStringPool()));
+        output.putInt(poolIndex(pools, type.getStringPool()));
+        long[] offsets = type.getOffsets();
+        output.putInt(offsets.length);
+        for (long offset : offsets) {
+          output.putInt((int) offset);
+        }
+        ByteBuffer entries = type.getBuffer().duplicate();
+        entries.position(0);
+        output.putBlock(entries);
+      }
+    }
+  }
+
+  private static ResourcePackage readPackage(ByteBuffer buffer, StringPool[] pools) {
+    PackageHeader packageHeader = new PackageHeader(ChunkType.TABLE_PACKAGE, 0, 0);
+    packageHeader.setId(buffer.getInt());
+    packageHeader.setName(readString(buffer));
+    ResourcePackage resourcePackage = new ResourcePackage(packageHeader);
+    StringPool typeStringPool = readPoolIndex(buffer, pools);
+    StringPool keyStringPool = readPoolIndex(buffer, pools);
+    resourcePackage.setTypeStringPool(typeStringPool);
+    resourcePackage.setKeyStringPool(keyStringPool);
+
+    int typeSpecCount = buffer.getInt();
+    for (int i = 0; i < typeSpecCount; i++) {
+      TypeSpecHeader typeSpecHeader = new TypeSpecHeader(ChunkType.TABLE_TYPE_SPEC, 0, 0);
+      typeSpecHeader.setId((short) buffer.getInt());
+      TypeSpec typeSpec = new TypeSpec(typeSpecHeader);
+      typeSpec.setEntryFlags(readInts(buffer, buffer.getInt()));
+      typeSpec.setName(typeStringPool.get(typeSpecHeader.getId() - 1));
+      resourcePackage.addTypeSpec(typeSpec);
+    }
+
+    int typeCount = buffer.getInt();
+    for (int i = 0; i < typeCount; i++) {
+      TypeHeader typeHeader = new TypeHeader(ChunkType.TABLE_TYPE, 0, 0);
+      typeHeader.setId((short) buffer.getInt());
+      ResTableConfig config = new ResTableConfig();
+      config.setLanguage(readString(buffer));
+      config.setCountry(readString(buffer));
+      typeHeader.setConfig(config);
+      StringPool typeKeyStringPool = readPoolIndex(buffer, pools);
+      StringPool stringPool = readPoolIndex(buffer, pools);
+      Type type = new Type(typeHeader);
+      type.setName(typeStringPool.get(typeHeader.getId() - 1));
+      type.setOffsets(readInts(buffer, buffer.getInt()));
+      type.setBuffer(readBytes(buffer, buffer.getInt()));
+      type.setKeyStringPool(typeKeyStringPool);
+      type.setStringPool(stringPool);
+      resourcePackage.addType(type);
+    }
+    return resourcePackage;
+  }
+
+  private static void addStringPool(Map<StringPool, Integer> pools, List<StringPool> poolList,
+                                    StringPool stringPool) {
+    if (stringPool != null && !pools.containsKey(stringPool)) {
+      pools.put(stringPool, poolList.size());
+      poolList.add(stringPool);
+    }
+  }
+
+  /**
+   * @return the index of the pool in the snapshot, or -1 for {@code null}.
+   */
+  private static int poolIndex(Map<StringPool, Integer> pools, StringPool stringPool) {
+    return stringPool == null ? -1 : pools.get(stringPool);
+  }
+
+  private static StringPool readPoolIndex(ByteBuffer buffer, StringPool[] pools) {
+    int index = buffer.getInt();
+    return index == -1 ? null : pools[index];
+  }
+
+  /**
+   * Write the pool as UTF-8, or as UTF-16 if a string is too long for UTF-8. Strings are stored
+   * once however often they occur. {@code null} strings are written as "".
+   */
+  private static void writeStringPool(Output output, StringPool stringPool) {
+    if (stringPool == null) {
+      output.putInt(-1);
+      return;
+    }
+    int count = stringPool.size();
+    boolean utf8 = true;
+    byte[][] encoded = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      String s = stringPool.get(i);
+      encoded[i] = s == null ? new byte[0] : s.getBytes(UTF_8);
+      if (encoded[i].length > MAX_UTF8_LENGTH) {
+        utf8 = false;
+      }
+    }
+    Output data = new Output();
+    int[] offsets = new int[count];
+    Map<String, Integer> interned = new HashMap<>();
+    for (int i = 0; i < count; i++) {
+      String s = stringPool.get(i);
+      if (s == null) {
+        s = "";
+      }
+      Integer offset = interned.get(s);
+      if (offset == null) {
+        offset = data.buffer.position();
+        interned.put(s, offset);
+        if (utf8) {
+          putUtf8Length(data, s.length());
+          putUtf8Length(data, encoded[i].length);
+          data.put(encoded[i]);
+          data.putByte(0);
+        } else {
+          if (s.length() > 0x7fff) {
+            data.putShort(0x8000 | (s.length() >>> 16));
+          }
+          data.putShort(s.length());
+          for (int j = 0; j < s.length(); j++) {
+            data.putShort(s.charAt(j));
+          }
+          data.putShort(0);
+        }
+      }
+      offsets[i] = offset;
+    }
+    output.putInt(count);
+    output.putInt(utf8 ? 1 : 0);
+    for (int offset : offsets) {
+      output.putInt(offset);
+    }
+    data.buffer.flip();
+    output.putBlock(data.buffer);
+  }
+
+  private static void putUtf8Length(Output output, int length) {
+    if (length > 0x7f) {
+      output.putByte(0x80 | (length >>> 8));
+    }
+    output.putByte(length);
+  }
+
+  private static StringPool readStringPool(ByteBuffer buffer) {
+    int count = buffer.getInt();
+    if (count < 0) {
+      return null;
+    }
+    boolean utf8 = buffer.getInt() != 0;
+    IntBuffer offsets = readInts(buffer, count);
+    return new StringPool(readBytes(buffer, buffer.getInt()), offsets, utf8);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    ByteBuffer bytes = readBytes(buffer, buffer.getInt());
+    byte[] array = new byte[bytes.remaining()];
+    bytes.get(array);
+    return new String(array, UTF_8);
+  }
+
+  /**
+   * @return a view of the next {@code count} ints.
+   */
+  private static IntBuffer readInts(ByteBuffer buffer, int count) {
+    ByteBuffer slice = buffer.slice();
+    slice.order(ByteOrder.LITTLE_ENDIAN);
+    IntBuffer ints = slice.asIntBuffer();
+    ints.limit(count);
+    buffer.position(buffer.position() + count * 4);
+    return ints;
+  }
+
+  /**
+   * @return a little endian view of the next {@code length} bytes, skipping the padding after
+   * them.
+   */
+  private static ByteBuffer readBytes(ByteBuffer buffer, int length) {
+    ByteBuffer slice = buffer.slice();
+    slice.limit(length);
+    slice = slice.slice();
+    slice.order(ByteOrder.LITTLE_ENDIAN);
+    buffer.position(buffer.position() + align(length));
+    return slice;
+  }
+
+  private static int align(int length) {
+    return (length + 3) & ~3;
+  }
+
+  /** A growable little endian buffer. */
+  private static class Output {
+
+    ByteBuffer buffer = ByteBuffer.allocate(8192).order(ByteOrder.LITTLE_ENDIAN);
+
+    void putInt(int value) {
+      ensure(4);
+      buffer.putInt(value);
+    }
+
+    void putShort(int value) {
+      ensure(2);
+      buffer.putShort((short) value);
+    }
+
+    void putByte(int value) {
+      ensure(1);
+      buffer.put((byte) value);
+    }
+
+    void putString(String s) {
+      putBlock(ByteBuffer.wrap(s == null ? new byte[0] : s.getBytes(UTF_8)));
+    }
+
+    void put(byte[] data) {
+      ensure(data.length);
+      buffer.put(data);
+    }
+
+    /** Put the length and the remaining bytes of {@code data}, padded to 4 bytes. */
+    void putBlock(ByteBuffer data) {
+      int length = data.remaining();
+      putInt(length);
+      ensure(align(length));
+      buffer.put(data);
+      for (int i = length; i < align(length); i++) {
+        buffer.put((byte) 0);
+      }
+    }
+
+    private void ensure(int length) {
+      if (buffer.remaining() < length) {
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + length);
+        ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+      }
+    }
+  }
+}
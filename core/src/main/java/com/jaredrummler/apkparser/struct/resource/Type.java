@@ -28,15 +28,20 @@
 
 package com.jaredrummler.apkparser.struct.resource;
 
+import com.jaredrummler.apkparser.struct.ResValue;
 import com.jaredrummler.apkparser.struct.StringPool;
 import com.jaredrummler.apkparser.utils.Buffers;
 import com.jaredrummler.apkparser.utils.ParseUtils;
 
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.Locale;
 
 public class Type {
 
+  // ResTable_map: uint32_t name followed by a Res_value
+  private static final int RESOURCE_TABLE_MAP_SIZE = 4 + ResValue.SIZE;
+
   private String name;
   private short id;
 
@@ -44,7 +49,8 @@ public class Type {
 
   private StringPool keyStringPool;
   private ByteBuffer buffer;
-  private long[] offsets;
+  // uint32 entry offsets, one per entry of the type
+  private IntBuffer offsets;
   private StringPool stringPool;
 
   public Type(TypeHeader header) {
@@ -53,57 +59,57 @@ public class Type {
   }
 
   public ResourceEntry getResourceEntry(int id) {
-    if (id >= offsets.length) {
+    if (id >= offsets.limit()) {
       return null;
     }
 
-    if (offsets[id] == TypeHeader.NO_ENTRY) {
+    int offset = offsets.get(id);
+    if ((offset & 0xFFFFFFFFL) == TypeHeader.NO_ENTRY) {
       return null;
     }
 
-    // read Resource Entries
-    buffer.position((int) offsets[id]);
-    return readResourceEntry();
+    // read Resource Entries. Only absolute reads are used, the buffer position is never changed,
+    // so a parsed resource table can be queried from multiple threads.
+    return readResourceEntry(offset);
   }
 
-  private ResourceEntry readResourceEntry() {
-    long beginPos = buffer.position();
+  private ResourceEntry readResourceEntry(int offset) {
     ResourceEntry resourceEntry = new ResourceEntry();
     // size is always 8(simple), or 16(complex)
-    resourceEntry.setSize(Buffers.readUShort(buffer));
-    resourceEntry.setFlags(Buffers.readUShort(buffer));
-    long keyRef = buffer.getInt();
-    resourceEntry.setKey(keyStringPool.get((int) keyRef));
+    resourceEntry.setSize(buffer.getShort(offset) & 0xffff);
+    resourceEntry.setFlags(buffer.getShort(offset + 2) & 0xffff);
+    int keyRef = buffer.getInt(offset + 4);
+    resourceEntry.setKey(keyStringPool.get(keyRef));
 
     if ((resourceEntry.getFlags() & ResourceEntry.FLAG_COMPLEX) != 0) {
       ResourceMapEntry resourceMapEntry = new ResourceMapEntry(resourceEntry);
 
       // Resource identifier of the parent mapping, or 0 if there is none.
-      resourceMapEntry.setParent(Buffers.readUInt(buffer));
-      resourceMapEntry.setCount(Buffers.readUInt(buffer));
-
-      buffer.position((int) (beginPos + resourceEntry.getSize()));
+      resourceMapEntry.setParent(Buffers.readUInt(buffer, offset + 8));
+      resourceMapEntry.setCount(Buffers.readUInt(buffer, offset + 12));
 
       //An individual complex Resource entry comprises an entry immediately followed by one or more fields.
+      int pos = offset + resourceEntry.getSize();
       ResourceTableMap[] resourceTableMaps =
           new ResourceTableMap[(int) resourceMapEntry.getCount()];
       for (int i = 0; i < resourceMapEntry.getCount(); i++) {
-        resourceTableMaps[i] = readResourceTableMap();
+        resourceTableMaps[i] = readResourceTableMap(pos);
+        pos += RESOURCE_TABLE_MAP_SIZE;
       }
 
       resourceMapEntry.setResourceTableMaps(resourceTableMaps);
       return resourceMapEntry;
     } else {
-      buffer.position((int) (beginPos + resourceEntry.getSize()));
-      resourceEntry.setValue(ParseUtils.readResValue(buffer, stringPool));
+      int pos = offset + resourceEntry.getSize();
+      resourceEntry.setValue(ParseUtils.readResValue(buffer, pos, stringPool));
       return resourceEntry;
     }
   }
 
-  private ResourceTableMap readResourceTableMap() {
+  private ResourceTableMap readResourceTableMap(int offset) {
     ResourceTableMap resourceTableMap = new ResourceTableMap();
-    resourceTableMap.setNameRef(Buffers.readUInt(buffer));
-    resourceTableMap.setResValue(ParseUtils.readResValue(buffer, stringPool));
+    resourceTableMap.setNameRef(Buffers.readUInt(buffer, offset));
+    resourceTableMap.setResValue(ParseUtils.readResValue(buffer, offset + 4, stringPool));
 
     if ((resourceTableMap.getNameRef() & 0x02000000) != 0) {
       //read arrays
@@ -155,12 +161,32 @@ public class Type {
     this.buffer = buffer;
   }
 
+  /**
+   * @return a copy of the entry offsets.
+   */
   public long[] getOffsets() {
-    return offsets;
+    long[] copy = new long[offsets.limit()];
+    for (int i = 0; i < copy.length; i++) {
+      copy[i] = offsets.get(i) & 0xFFFFFFFFL;
+    }
+    return copy;
   }
 
   public void setOffsets(long[] offsets) {
-    this.offsets = offsets;
+    int[] ints = new int[offsets.length];
+    for (int i = 0; i < ints.length; i++) {
+      ints[i] = (int) offsets[i];
+    }
+    this.offsets = IntBuffer.wrap(ints);
+  }
+
+  /**
+   * @param offsets
+   *     the uint32 entry offsets, e.g. a view of the offsets table in the type chunk. Only
+   *     absolute reads are used.
+   */
+  public void setOffsets(IntBuffer offsets) {
+    this.offsets = offsets.slice();
   }
 
   public StringPool getStringPool() {
@@ -28,9 +28,12 @@
 
 package com.jaredrummler.apkparser.struct.resource;
 
+import java.nio.IntBuffer;
+
 public class TypeSpec {
 
-  private long[] entryFlags;
+  // uint32 flags, one per entry of the type
+  private IntBuffer entryFlags;
   private String name;
   private short id;
 
@@ -39,15 +42,42 @@ public class TypeSpec {
   }
 
   public boolean exists(int id) {
-    return id < entryFlags.length;
+    return id < entryFlags.limit();
+  }
+
+  /**
+   * @return the number of entries of the type.
+   */
+  public int getEntryCount() {
+    return entryFlags.limit();
   }
 
+  /**
+   * @return a copy of the entry flags.
+   */
   public long[] getEntryFlags() {
-    return entryFlags;
+    long[] copy = new long[entryFlags.limit()];
+    for (int i = 0; i < copy.length; i++) {
+      copy[i] = entryFlags.get(i) & 0xFFFFFFFFL;
+    }
+    return copy;
   }
 
   public void setEntryFlags(long[] entryFlags) {
-    this.entryFlags = entryFlags;
+    int[] ints = new int[entryFlags.length];
+    for (int i = 0; i < ints.length; i++) {
+      ints[i] = (int) entryFlags[i];
+    }
+    this.entryFlags = IntBuffer.wrap(ints);
+  }
+
+  /**
+   * @param entryFlags
+   *     the uint32 entry flags, e.g. a view of the flags in the type spec chunk. Only absolute
+   *     reads are used.
+   */
+  public void setEntryFlags(IntBuffer entryFlags) {
+    this.entryFlags = entryFlags.slice();
   }
 
   public String getName() {
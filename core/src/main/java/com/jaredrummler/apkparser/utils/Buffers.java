@@ -56,6 +56,14 @@ public class Buffers {
     return i & 0xffffffffL;
   }
 
+  /**
+   * Get one unsigned int at the given absolute index as long type
+   */
+  public static long readUInt(ByteBuffer buffer, int index) {
+    int i = buffer.getInt(index);
+    return i & 0xffffffffL;
+  }
+
   /**
    * Get bytes
    */
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser.utils;
+
+import java.util.Arrays;
+
+/**
+ * A map from primitive int keys to objects, kept as two parallel arrays sorted by key.
+ *
+ * <p>Lookups are a binary search and never box the key. Insertions are O(n), so this is meant for
+ * tables that are built once and then read many times.</p>
+ *
+ * @param <E>
+ *     the value type
+ */
+public class IntObjectMap<E> {
+
+  private int[] keys;
+  private Object[] values;
+  private int size;
+
+  public IntObjectMap() {
+    this(10);
+  }
+
+  public IntObjectMap(int initialCapacity) {
+    keys = new int[initialCapacity];
+    values = new Object[initialCapacity];
+  }
+
+  /**
+   * @return the value mapped to the key, or {@code null} if there is none.
+   */
+  @SuppressWarnings("unchecked")
+  public E get(int key) {
+    int index = Arrays.binarySearch(keys, 0, size, key);
+    return index < 0 ? null : (E) values[index];
+  }
+
+  /**
+   * Map the key to the value, replacing any previous value.
+   */
+  public void put(int key, E value) {
+    int index = Arrays.binarySearch(keys, 0, size, key);
+    if (index >= 0) {
+      values[index] = value;
+      return;
+    }
+    index = ~index;
+    if (size == keys.length) {
+      int capacity = Math.max(4, size * 2);
+      keys = Arrays.copyOf(keys, capacity);
+      values = Arrays.copyOf(values, capacity);
+    }
+    System.arraycopy(keys, index, keys, index + 1, size - index);
+    System.arraycopy(values, index, values, index + 1, size - index);
+    keys[index] = key;
+    values[index] = value;
+    size++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int keyAt(int index) {
+    return keys[index];
+  }
+
+  @SuppressWarnings("unchecked")
+  public E valueAt(int index) {
+    return (E) values[index];
+  }
+
+}
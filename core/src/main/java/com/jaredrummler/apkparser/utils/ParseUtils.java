@@ -29,13 +29,13 @@
 package com.jaredrummler.apkparser.utils;
 
 import com.jaredrummler.apkparser.exception.ParserException;
-import com.jaredrummler.apkparser.parser.StringPoolEntry;
 import com.jaredrummler.apkparser.struct.*;
 import com.jaredrummler.apkparser.struct.resource.*;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.nio.charset.Charset;
-import java.util.List;
 import java.util.Locale;
 
 public class ParseUtils {
@@ -43,26 +43,43 @@ public class ParseUtils {
   public static final Charset CHARSET_UTF_8 = Charset.forName("UTF-8");
 
   /**
-   * Read string from input buffer. if get EOF before read enough data, throw IOException.
+   * Read string at the given absolute offset of the string pool data. The buffer position is not
+   * changed.
    */
-  public static String readString(ByteBuffer buffer, boolean utf8) {
+  public static String readString(ByteBuffer buffer, int offset, boolean utf8) {
     if (utf8) {
       // The lengths are encoded in the same way as for the 16-bit format
       // but using 8-bit rather than 16-bit integers.
-      readLen(buffer);
-      int bytesLen = readLen(buffer);
-      byte[] bytes = Buffers.readBytes(buffer, bytesLen);
-      String str = new String(bytes, CHARSET_UTF_8);
-      // zero
-      Buffers.readUByte(buffer);
-      return str;
+      int charLen = buffer.get(offset) & 0xff;
+      offset += (charLen & 0x80) != 0 ? 2 : 1;
+      int bytesLen = buffer.get(offset) & 0xff;
+      if ((bytesLen & 0x80) != 0) {
+        bytesLen = ((bytesLen & 0x7f) << 8) | (buffer.get(offset + 1) & 0xff);
+        offset += 2;
+      } else {
+        offset += 1;
+      }
+      if (buffer.hasArray()) {
+        return new String(buffer.array(), buffer.arrayOffset() + offset, bytesLen, CHARSET_UTF_8);
+      }
+      byte[] bytes = new byte[bytesLen];
+      ByteBuffer data = buffer.duplicate();
+      data.position(offset);
+      data.get(bytes);
+      return new String(bytes, CHARSET_UTF_8);
     } else {
       // The length is encoded as either one or two 16-bit integers as per the commentRef...
-      int strLen = readLen16(buffer);
-      String str = Buffers.readString(buffer, strLen);
-      // zero
-      Buffers.readUShort(buffer);
-      return str;
+      int strLen = buffer.getShort(offset) & 0xffff;
+      offset += 2;
+      if ((strLen & 0x8000) != 0) {
+        strLen = ((strLen & 0x7fff) << 16) | (buffer.getShort(offset) & 0xffff);
+        offset += 2;
+      }
+      char[] chars = new char[strLen];
+      for (int i = 0; i < strLen; i++) {
+        chars[i] = buffer.getChar(offset + i * 2);
+      }
+      return new String(chars);
     }
   }
 
@@ -80,102 +97,54 @@ public class ParseUtils {
     return str;
   }
 
-  /**
-   * Read encoding len.
-   * See StringPool.cpp ENCODE_LENGTH
-   */
-  private static int readLen(ByteBuffer buffer) {
-    int len = 0;
-    int i = Buffers.readUByte(buffer);
-    if ((i & 0x80) != 0) {
-      //read one more byte.
-      len |= (i & 0x7f) << 7;
-      len += Buffers.readUByte(buffer);
-    } else {
-      len = i;
-    }
-    return len;
-  }
-
-  /**
-   * Read encoding len.
-   * See Stringpool.cpp ENCODE_LENGTH
-   */
-  private static int readLen16(ByteBuffer buffer) {
-    int len = 0;
-    int i = Buffers.readUShort(buffer);
-    if ((i & 0x8000) != 0) {
-      len |= (i & 0x7fff) << 15;
-      len += Buffers.readUShort(buffer);
-    } else {
-      len = i;
-    }
-    return len;
-  }
-
   /**
    * Read String pool, for APK binary xml file and resource table.
+   *
+   * <p>Only the string offsets are read here. Strings are decoded from the buffer the first time
+   * they are requested, see {@link StringPool#get(int)}.</p>
    */
   public static StringPool readStringPool(ByteBuffer buffer, StringPoolHeader stringPoolHeader) {
 
     long beginPos = buffer.position();
-    long[] offsets = new long[(int) stringPoolHeader.getStringCount()];
-    // read strings offset
-    if (stringPoolHeader.getStringCount() > 0) {
-      for (int idx = 0; idx < stringPoolHeader.getStringCount(); idx++) {
-        offsets[idx] = Buffers.readUInt(buffer);
-      }
-    }
+    int stringCount = (int) stringPoolHeader.getStringCount();
+    // the strings offset, read in place
+    ByteBuffer offsetData = buffer.slice();
+    offsetData.order(ByteOrder.LITTLE_ENDIAN);
+    IntBuffer offsets = offsetData.asIntBuffer();
+    offsets.limit(stringCount);
     // read flag
     // the string index is sorted by the string values if true
     // boolean sorted = (stringPoolHeader.getFlags() & StringPoolHeader.SORTED_FLAG) != 0;
     // string use utf-8 format if true, otherwise utf-16
     boolean utf8 = (stringPoolHeader.getFlags() & StringPoolHeader.UTF8_FLAG) != 0;
 
-    // read strings. the head and metas have 28 bytes
+    // the strings data. the head and metas have 28 bytes
     long stringPos =
         beginPos + stringPoolHeader.getStringsStart() - stringPoolHeader.getHeaderSize();
-    buffer.position((int) stringPos);
-
-    StringPoolEntry[] entries = new StringPoolEntry[offsets.length];
-    for (int i = 0; i < offsets.length; i++) {
-      entries[i] = new StringPoolEntry(i, stringPos + offsets[i]);
-    }
-
-    String lastStr = null;
-    long lastOffset = -1;
-    StringPool stringPool = new StringPool((int) stringPoolHeader.getStringCount());
-    for (StringPoolEntry entry : entries) {
-      if (entry.offset == lastOffset) {
-        stringPool.set(entry.index, lastStr);
-        continue;
-      }
-
-      buffer.position((int) entry.offset);
-      lastOffset = entry.offset;
-      String str = ParseUtils.readString(buffer, utf8);
-      lastStr = str;
-      stringPool.set(entry.index, str);
-    }
+    long endPos = beginPos + stringPoolHeader.getBodySize();
+    ByteBuffer data = buffer.duplicate();
+    data.limit((int) endPos);
+    data.position(stringCount == 0 ? (int) endPos : (int) stringPos);
+    data = data.slice();
+    data.order(ByteOrder.LITTLE_ENDIAN);
 
     // read styles
     // if (stringPoolHeader.getStyleCount() > 0) {
     // now we just skip it
     // }
 
-    buffer.position((int) (beginPos + stringPoolHeader.getBodySize()));
+    buffer.position((int) endPos);
 
-    return stringPool;
+    return new StringPool(data, offsets, utf8);
   }
 
   /**
    * Read resource value RGB/ARGB type.
    */
-  public static String readRGBs(ByteBuffer buffer, int strLen) {
-    long l = Buffers.readUInt(buffer);
+  public static String readRGBs(long data, int strLen) {
     StringBuilder sb = new StringBuilder();
     for (int i = strLen / 2 - 1; i >= 0; i--) {
-      sb.append(Integer.toHexString((int) ((l >> i * 8) & 0xff)));
+      sb.append(Integer.toHexString((int) ((data >> i * 8) & 0xff)));
     }
     return sb.toString();
   }
@@ -184,55 +153,54 @@ public class ParseUtils {
    * Read res value, convert from different types to string.
    */
   public static ResourceEntity readResValue(ByteBuffer buffer, StringPool stringPool) {
-    ResValue resValue = new ResValue();
-    resValue.setSize(Buffers.readUShort(buffer));
-    resValue.setRes0(Buffers.readUByte(buffer));
-    resValue.setDataType(Buffers.readUByte(buffer));
+    int offset = buffer.position();
+    ResourceEntity resourceEntity = readResValue(buffer, offset, stringPool);
+    buffer.position(offset + ResValue.SIZE);
+    return resourceEntity;
+  }
+
+  /**
+   * Read res value at the given absolute offset, convert from different types to string. The
+   * buffer position is not changed, so a buffer can be shared between threads.
+   */
+  public static ResourceEntity readResValue(ByteBuffer buffer, int offset,
+                                            StringPool stringPool) {
+    // uint16_t size; uint8_t res0; uint8_t dataType; uint32_t data
+    short dataType = (short) (buffer.get(offset + 3) & 0xff);
+    int data = buffer.getInt(offset + 4);
+    long unsignedData = data & 0xffffffffL;
 
-    switch (resValue.getDataType()) {
+    switch (dataType) {
       case ResValue.ResType.INT_DEC:
       case ResValue.ResType.INT_HEX:
-        resValue.setData(new ResourceEntity(buffer.getInt()));
-        break;
+        return new ResourceEntity(data);
       case ResValue.ResType.STRING:
-        int strRef = buffer.getInt();
-        if (strRef >= 0) {
-          resValue.setData(new ResourceEntity(stringPool.get(strRef)));
+        if (data >= 0) {
+          return new ResourceEntity(stringPool.get(data));
         }
-        break;
+        return null;
       case ResValue.ResType.REFERENCE:
-        long resourceId = Buffers.readUInt(buffer);
-        resValue.setData(new ResourceEntity(resourceId));
-        break;
+        return new ResourceEntity(unsignedData);
       case ResValue.ResType.INT_BOOLEAN:
-        resValue.setData(new ResourceEntity(buffer.getInt() != 0));
-        break;
+        return new ResourceEntity(data != 0);
       case ResValue.ResType.NULL:
-        resValue.setData(new ResourceEntity(""));
-        break;
+        return new ResourceEntity("");
       case ResValue.ResType.INT_COLOR_RGB8:
       case ResValue.ResType.INT_COLOR_RGB4:
-        resValue.setData(new ResourceEntity(readRGBs(buffer, 6)));
-        break;
+        return new ResourceEntity(readRGBs(unsignedData, 6));
       case ResValue.ResType.INT_COLOR_ARGB8:
       case ResValue.ResType.INT_COLOR_ARGB4:
-        resValue.setData(new ResourceEntity(readRGBs(buffer, 8)));
-        break;
+        return new ResourceEntity(readRGBs(unsignedData, 8));
       case ResValue.ResType.DIMENSION:
-        resValue.setData(new ResourceEntity(getDimension(buffer)));
-        break;
+        return new ResourceEntity(getDimension(unsignedData));
       case ResValue.ResType.FRACTION:
-        resValue.setData(new ResourceEntity(getFraction(buffer)));
-        break;
+        return new ResourceEntity(getFraction(unsignedData));
       default:
-        resValue.setData(new ResourceEntity("{" + resValue.getDataType() + ":"
-            + Buffers.readUInt(buffer) + "}"));
+        return new ResourceEntity("{" + dataType + ":" + unsignedData + "}");
     }
-    return resValue.getData();
   }
 
-  private static String getDimension(ByteBuffer buffer) {
-    long l = Buffers.readUInt(buffer);
+  private static String getDimension(long l) {
     short unit = (short) (l & 0xff);
     String unitStr;
     switch (unit) {
@@ -260,8 +228,7 @@ public class ParseUtils {
     return (l >> 8) + unitStr;
   }
 
-  private static String getFraction(ByteBuffer buffer) {
-    long l = Buffers.readUInt(buffer);
+  private static String getFraction(long l) {
     // The low-order 4 bits of the data value specify the type of the fraction
     short type = (short) (l & 0xf);
     String pstr;
@@ -301,20 +268,35 @@ public class ParseUtils {
       return "@android:style/" + ResourceTable.sysStyle.get((int) resourceId);
     }
 
-    String str = "resourceId:0x" + Long.toHexString(resourceId);
     if (table == null) {
-      return str;
+      return "resourceId:0x" + Long.toHexString(resourceId);
+    }
+
+    ResolvedResourceCache cache = table.getResolvedResourceCache();
+    if (cache == null) {
+      return resolveResourceById(resourceId, table, locale);
+    }
+    String result = cache.get(resourceId, locale);
+    if (result == null) {
+      result = resolveResourceById(resourceId, table, locale);
+      cache.put(resourceId, locale, result);
     }
+    return result;
+  }
+
+  private static String resolveResourceById(long resourceId, ResourceTable table,
+                                            Locale locale) {
+    String str = "resourceId:0x" + Long.toHexString(resourceId);
 
-    short packageId = (short) (resourceId >> 24 & 0xff);
-    short typeId = (short) ((resourceId >> 16) & 0xff);
+    int packageId = (int) (resourceId >> 24 & 0xff);
+    int typeId = (int) ((resourceId >> 16) & 0xff);
     int entryIndex = (int) (resourceId & 0xffff);
     ResourcePackage resourcePackage = table.getPackage(packageId);
     if (resourcePackage == null) {
       return str;
     }
     TypeSpec typeSpec = resourcePackage.getTypeSpec(typeId);
-    List<Type> types = resourcePackage.getTypes(typeId);
+    Type[] types = resourcePackage.getTypes(typeId);
     if (typeSpec == null || types == null) {
       return str;
     }
@@ -28,12 +28,10 @@
 
 package com.jaredrummler.apkparser.utils;
 
-import android.util.SparseArray;
-
 public class ResourceLoader {
 
-  public static SparseArray<String> loadSystemAttrIds() {
-    SparseArray<String> array = new SparseArray<>();
+  public static IntObjectMap<String> loadSystemAttrIds() {
+    IntObjectMap<String> array = new IntObjectMap<>(1280);
     array.put(16842752, "theme");
     array.put(16842753, "label");
     array.put(16842754, "icon");
@@ -1244,8 +1242,8 @@ public class ResourceLoader {
     return array;
   }
 
-  public static SparseArray<String> loadSystemStyles() {
-    SparseArray<String> array = new SparseArray<>();
+  public static IntObjectMap<String> loadSystemStyles() {
+    IntObjectMap<String> array = new IntObjectMap<>(64);
     array.put(16973824, "Animation");
     array.put(16973825, "Animation.Activity");
     array.put(16973826, "Animation.Dialog");
@@ -32,8 +32,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Iterator;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 public class Utils {
 
@@ -55,10 +53,6 @@ public class Utils {
     }
   }
 
-  public static ZipEntry getEntry(ZipFile zf, String path) {
-    return zf.getEntry(path);
-  }
-
   /**
    * Copied fom commons StringUtils
    *
@@ -0,0 +1,602 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser.utils;
+
+import com.jaredrummler.apkparser.exception.ParserException;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * A read-only zip file, read through a {@link FileChannel}.
+ *
+ * <p>Opening the archive reads the end of central directory record and the central directory,
+ * nothing else. Entries are not materialized: the central directory is kept as raw bytes, indexed
+ * by an open addressing hash table of entry name hashes and offsets into those bytes. An
+ * {@link Entry} is only created when it is looked up. ZIP64 archives are supported.</p>
+ */
+public class ZipArchive implements Closeable {
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int EOCD_SIGNATURE = 0x06054b50;
+  private static final int ZIP64_EOCD_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int EOCD_SIZE = 22;
+  private static final int ZIP64_EOCD_LOCATOR_SIZE = 20;
+  private static final int ZIP64_EOCD_SIZE = 56;
+  private static final int MAX_COMMENT_SIZE = 0xffff;
+
+  private static final int ZIP64_EXTRA_FIELD_ID = 0x0001;
+  private static final long ZIP64_MAGIC = 0xffffffffL;
+
+  private final File file;
+  private final RandomAccessFile randomAccessFile;
+  private final FileChannel channel;
+  private long centralDirectoryOffset;
+  private ByteBuffer centralDirectory;
+  // offsets of the central directory headers, in central directory order
+  private int[] headerOffsets;
+  private int entryCount;
+  // open addressing hash table of indexes into headerOffsets, plus one; 0 marks a free slot
+  private int[] table;
+  private int[] hashes;
+
+  /**
+   * Open a zip file and read its central directory.
+   *
+   * @param file
+   *     the zip file
+   * @throws IOException
+   *     if the file cannot be read or is not a valid zip file.
+   */
+  public ZipArchive(File file) throws IOException {
+    this.file = file;
+    this.randomAccessFile = new RandomAccessFile(file, "r");
+    this.channel = randomAccessFile.getChannel();
+    boolean opened = false;
+    try {
+      readCentralDirectory();
+      buildIndex();
+      opened = true;
+    } finally {
+      if (!opened) {
+        randomAccessFile.close();
+      }
+    }
+  }
+
+  private void readCentralDirectory() throws IOException {
+    ByteBuffer eocd = readEndOfCentralDirectory(channel);
+    if (eocd == null) {
+      throw new ParserException("Not a zip file: " + file);
+    }
+    long eocdOffset = channel.size() - eocd.remaining();
+    long count = eocd.getShort(10) & 0xffff;
+    long size = eocd.getInt(12) & 0xffffffffL;
+    long offset = eocd.getInt(16) & 0xffffffffL;
+    if ((count == 0xffff || size == ZIP64_MAGIC || offset == ZIP64_MAGIC)
+        && eocdOffset >= ZIP64_EOCD_LOCATOR_SIZE) {
+      // the zip64 end of central directory locator is right before the record
+      ByteBuffer locator =
+          ByteBuffer.allocate(ZIP64_EOCD_LOCATOR_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      readFully(channel, locator, eocdOffset - ZIP64_EOCD_LOCATOR_SIZE);
+      if (locator.getInt(0) == ZIP64_EOCD_LOCATOR_SIGNATURE) {
+        long zip64Offset = locator.getLong(8);
+        if (zip64Offset < 0 || zip64Offset + ZIP64_EOCD_SIZE > eocdOffset) {
+          throw new ParserException("Invalid zip64 end of central directory locator");
+        }
+        ByteBuffer zip64Eocd = ByteBuffer.allocate(ZIP64_EOCD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, zip64Eocd, zip64Offset);
+        if (zip64Eocd.getInt(0) != ZIP64_EOCD_SIGNATURE) {
+          throw new ParserException("Invalid zip64 end of central directory record");
+        }
+        count = zip64Eocd.getLong(32);
+        size = zip64Eocd.getLong(40);
+        offset = zip64Eocd.getLong(48);
+      }
+    }
+    if (offset < 0 || size < 0 || offset + size > eocdOffset) {
+      throw new ParserException("Invalid central directory offset: " + offset);
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new ParserException("Central directory is too large: " + size);
+    }
+    ByteBuffer cd = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(channel, cd, offset);
+    cd.flip();
+    centralDirectoryOffset = offset;
+    centralDirectory = cd;
+    headerOffsets = new int[(int) Math.max(0, Math.min(count, size / CENTRAL_HEADER_SIZE))];
+  }
+
+  private void buildIndex() throws ParserException {
+    ByteBuffer cd = centralDirectory;
+    int[] offsets = headerOffsets;
+    int count = 0;
+    int pos = 0;
+    int limit = cd.limit();
+    while (pos < limit) {
+      if (pos + CENTRAL_HEADER_SIZE > limit || cd.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+        throw new ParserException("Invalid central directory header at " + pos);
+      }
+      int next = pos + CENTRAL_HEADER_SIZE + (cd.getShort(pos + 28) & 0xffff)
+          + (cd.getShort(pos + 30) & 0xffff) + (cd.getShort(pos + 32) & 0xffff);
+      if (next > limit) {
+        throw new ParserException("Invalid central directory header at " + pos);
+      }
+      if (count == offsets.length) {
+        offsets = Arrays.copyOf(offsets, Math.max(16, count * 2));
+      }
+      offsets[count++] = pos;
+      pos = next;
+    }
+    headerOffsets = offsets;
+    entryCount = count;
+
+    int capacity = 2;
+    while (capacity < count * 2) {
+      capacity <<= 1;
+    }
+    int mask = capacity - 1;
+    table = new int[capacity];
+    hashes = new int[count];
+    for (int i = 0; i < count; i++) {
+      int header = offsets[i];
+      int nameOffset = header + CENTRAL_HEADER_SIZE;
+      int nameLength = cd.getShort(header + 28) & 0xffff;
+      int hash = hash(cd, nameOffset, nameLength);
+      hashes[i] = hash;
+      int slot = hash & mask;
+      boolean duplicate = false;
+      while (table[slot] != 0) {
+        int other = table[slot] - 1;
+        if (hashes[other] == hash && nameEquals(offsets[other], cd, nameOffset, nameLength)) {
+          // the first entry of a name wins
+          duplicate = true;
+          break;
+        }
+        slot = (slot + 1) & mask;
+      }
+      if (!duplicate) {
+        table[slot] = i + 1;
+      }
+    }
+  }
+
+  /**
+   * Look up an entry by name.
+   *
+   * @param name
+   *     the entry name, e.g. "classes.dex"
+   * @return the entry, or {@code null} if there is no entry of that name.
+   */
+  public Entry getEntry(String name) {
+    byte[] bytes = name.getBytes(ParseUtils.CHARSET_UTF_8);
+    ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+    int hash = hash(wrapped, 0, bytes.length);
+    int mask = table.length - 1;
+    int slot = hash & mask;
+    while (table[slot] != 0) {
+      int index = table[slot] - 1;
+      if (hashes[index] == hash && nameEquals(headerOffsets[index], wrapped, 0, bytes.length)) {
+        return newEntry(headerOffsets[index]);
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * List the names of the file entries that start with a prefix, e.g. "META-INF/", in central
+   * directory order. The names are compared as raw bytes, only the matching names are decoded.
+   *
+   * @param prefix
+   *     the name prefix
+   * @return the entry names
+   */
+  public List<String> getEntryNames(String prefix) {
+    ByteBuffer cd = centralDirectory;
+    byte[] prefixBytes = prefix.getBytes(ParseUtils.CHARSET_UTF_8);
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < entryCount; i++) {
+      int header = headerOffsets[i];
+      int nameOffset = header + CENTRAL_HEADER_SIZE;
+      int nameLength = cd.getShort(header + 28) & 0xffff;
+      if (nameLength >= prefixBytes.length && startsWith(cd, nameOffset, prefixBytes)
+          && cd.get(nameOffset + nameLength - 1) != '/') {
+        names.add(getName(cd, nameOffset, nameLength));
+      }
+    }
+    return names;
+  }
+
+  /**
+   * @return the number of entries in the central directory.
+   */
+  public int size() {
+    return entryCount;
+  }
+
+  /**
+   * Get the offset of the entry data in the zip file, right after its local file header.
+   *
+   * @throws IOException
+   *     if the local file header is not valid.
+   */
+  public long getDataOffset(Entry entry) throws IOException {
+    if (entry.dataOffset == -1) {
+      ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      readFully(channel, header, entry.localHeaderOffset);
+      if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+        throw new ParserException("Invalid local file header for entry: " + entry.name);
+      }
+      // the extra field in the local header may differ from the one in the central directory
+      int nameLength = header.getShort(26) & 0xffff;
+      int extraLength = header.getShort(28) & 0xffff;
+      long dataOffset = entry.localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+      if (dataOffset + entry.compressedSize > centralDirectoryOffset) {
+        throw new ParserException("Entry data overlaps the central directory: " + entry.name);
+      }
+      entry.dataOffset = dataOffset;
+    }
+    return entry.dataOffset;
+  }
+
+  /**
+   * Open a stream of the uncompressed entry data. Prefer {@link ZipEntryReader} to read a whole
+   * entry into a buffer.
+   *
+   * @throws IOException
+   *     if the entry cannot be located or its compression method is not supported.
+   */
+  public InputStream getInputStream(Entry entry) throws IOException {
+    InputStream in = new EntryInputStream(channel, getDataOffset(entry), entry.compressedSize);
+    switch (entry.method) {
+      case ZipEntry.STORED:
+        return in;
+      case ZipEntry.DEFLATED:
+        int bufferSize = (int) Math.max(64, Math.min(entry.compressedSize, 8192));
+        return new EntryInflaterInputStream(in, bufferSize);
+      default:
+        throw new ParserException("Unsupported compression method " + entry.method
+            + " of entry: " + entry.name);
+    }
+  }
+
+  /**
+   * @return the zip file
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * @return the zip file, for positional reads and mapping.
+   */
+  public FileChannel getChannel() {
+    return channel;
+  }
+
+  /**
+   * @return the offset of the central directory in the zip file.
+   */
+  public long getCentralDirectoryOffset() {
+    return centralDirectoryOffset;
+  }
+
+  @Override public void close() throws IOException {
+    randomAccessFile.close();
+  }
+
+  private Entry newEntry(int header) {
+    ByteBuffer cd = centralDirectory;
+    int nameLength = cd.getShort(header + 28) & 0xffff;
+    int extraLength = cd.getShort(header + 30) & 0xffff;
+    Entry entry = new Entry(getName(cd, header + CENTRAL_HEADER_SIZE, nameLength));
+    entry.method = cd.getShort(header + 10) & 0xffff;
+    entry.crc = cd.getInt(header + 16) & 0xffffffffL;
+    entry.compressedSize = cd.getInt(header + 20) & 0xffffffffL;
+    entry.size = cd.getInt(header + 24) & 0xffffffffL;
+    entry.localHeaderOffset = cd.getInt(header + 42) & 0xffffffffL;
+    if (entry.size == ZIP64_MAGIC || entry.compressedSize == ZIP64_MAGIC
+        || entry.localHeaderOffset == ZIP64_MAGIC) {
+      readZip64ExtraField(entry, cd, header + CENTRAL_HEADER_SIZE + nameLength, extraLength);
+    }
+    return entry;
+  }
+
+  /**
+   * The zip64 extra field holds the 64 bit values of the fields that are 0xffffffff in the
+   * header, in this order: size, compressed size, local header offset.
+   */
+  private static void readZip64ExtraField(Entry entry, ByteBuffer cd, int offset, int length) {
+    int end = offset + length;
+    while (offset + 4 <= end) {
+      int id = cd.getShort(offset) & 0xffff;
+      int size = cd.getShort(offset + 2) & 0xffff;
+      int pos = offset + 4;
+      int fieldEnd = Math.min(end, pos + size);
+      if (id == ZIP64_EXTRA_FIELD_ID) {
+        if (entry.size == ZIP64_MAGIC && pos + 8 <= fieldEnd) {
+          entry.size = cd.getLong(pos);
+          pos += 8;
+        }
+        if (entry.compressedSize == ZIP64_MAGIC && pos + 8 <= fieldEnd) {
+          entry.compressedSize = cd.getLong(pos);
+          pos += 8;
+        }
+        if (entry.localHeaderOffset == ZIP64_MAGIC && pos + 8 <= fieldEnd) {
+          entry.localHeaderOffset = cd.getLong(pos);
+        }
+        return;
+      }
+      offset = pos + size;
+    }
+  }
+
+  private static String getName(ByteBuffer cd, int offset, int length) {
+    byte[] name = new byte[length];
+    for (int i = 0; i < length; i++) {
+      name[i] = cd.get(offset + i);
+    }
+    return new String(name, ParseUtils.CHARSET_UTF_8);
+  }
+
+  private static int hash(ByteBuffer buffer, int offset, int length) {
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + buffer.get(offset + i);
+    }
+    // spread the high bits, the table is indexed by the low bits
+    return hash ^ (hash >>> 16);
+  }
+
+  private boolean nameEquals(int header, ByteBuffer name, int offset, int length) {
+    ByteBuffer cd = centralDirectory;
+    if ((cd.getShort(header + 28) & 0xffff) != length) {
+      return false;
+    }
+    int nameOffset = header + CENTRAL_HEADER_SIZE;
+    for (int i = 0; i < length; i++) {
+      if (cd.get(nameOffset + i) != name.get(offset + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean startsWith(ByteBuffer cd, int offset, byte[] prefix) {
+    for (int i = 0; i < prefix.length; i++) {
+      if (cd.get(offset + i) != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Read the end of central directory record of a zip file.
+   *
+   * @param channel
+   *     the zip file
+   * @return the record followed by the archive comment, little endian, or {@code null} if the
+   * file is not a zip file. The position of the returned buffer in the file is
+   * {@code channel.size() - buffer.remaining()}.
+   * @throws IOException
+   *     if reading the file failed.
+   */
+  public static ByteBuffer readEndOfCentralDirectory(FileChannel channel) throws IOException {
+    long fileSize = channel.size();
+    if (fileSize < EOCD_SIZE) {
+      return null;
+    }
+    // the end of central directory record is at the end of the file, followed by a comment.
+    int tailSize = (int) Math.min(fileSize, EOCD_SIZE + MAX_COMMENT_SIZE);
+    ByteBuffer tail = ByteBuffer.allocate(tailSize).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(channel, tail, fileSize - tailSize);
+    for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+      // the signature may also occur in the comment, a real record's comment ends the file
+      if (tail.getInt(i) == EOCD_SIGNATURE
+          && i + EOCD_SIZE + (tail.getShort(i + 20) & 0xffff) == tailSize) {
+        tail.position(i);
+        ByteBuffer eocd = tail.slice();
+        eocd.order(ByteOrder.LITTLE_ENDIAN);
+        return eocd;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Fill the buffer from the channel, starting at the given position of the channel.
+   */
+  public static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read == -1) {
+        throw new ParserException("Unexpected end of zip file");
+      }
+      position += read;
+    }
+  }
+
+  /**
+   * An entry of the central directory.
+   */
+  public static final class Entry {
+
+    private final String name;
+    private int method;
+    private long crc;
+    private long compressedSize;
+    private long size;
+    private long localHeaderOffset;
+    private long dataOffset = -1;
+
+    private Entry(String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return the compression method, {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}.
+     */
+    public int getMethod() {
+      return method;
+    }
+
+    public long getCrc() {
+      return crc;
+    }
+
+    public long getCompressedSize() {
+      return compressedSize;
+    }
+
+    /**
+     * @return the uncompressed size
+     */
+    public long getSize() {
+      return size;
+    }
+
+    /**
+     * @return the offset of the local file header in the zip file.
+     */
+    public long getLocalHeaderOffset() {
+      return localHeaderOffset;
+    }
+
+    public boolean isDirectory() {
+      return name.endsWith("/");
+    }
+
+    @Override public String toString() {
+      return name;
+    }
+  }
+
+  /**
+   * Reads a range of the zip file with positional reads, so several streams can read the same
+   * channel concurrently.
+   */
+  private static class EntryInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private long position;
+    private final long end;
+
+    EntryInputStream(FileChannel channel, long position, long length) {
+      this.channel = channel;
+      this.position = position;
+      this.end = position + length;
+    }
+
+    @Override public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override public int read(byte[] b, int off, int len) throws IOException {
+      if (position >= end) {
+        return -1;
+      }
+      len = (int) Math.min(len, end - position);
+      int read = channel.read(ByteBuffer.wrap(b, off, len), position);
+      if (read == -1) {
+        throw new EOFException("Unexpected end of zip file");
+      }
+      position += read;
+      return read;
+    }
+
+    @Override public long skip(long n) {
+      long skipped = Math.max(0, Math.min(n, end - position));
+      position += skipped;
+      return skipped;
+    }
+
+    @Override public int available() {
+      return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+  }
+
+  private static class EntryInflaterInputStream extends InflaterInputStream {
+
+    private boolean eof;
+
+    EntryInflaterInputStream(InputStream in, int bufferSize) {
+      super(in, new Inflater(true), bufferSize);
+    }
+
+    @Override protected void fill() throws IOException {
+      if (eof) {
+        throw new EOFException("Unexpected end of ZLIB input stream");
+      }
+      len = in.read(buf, 0, buf.length);
+      if (len == -1) {
+        // an Inflater without zlib header needs an extra dummy byte at the end of the input
+        buf[0] = 0;
+        len = 1;
+        eof = true;
+      }
+      inf.setInput(buf, 0, len);
+    }
+
+    @Override public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        // created here, so InflaterInputStream does not end it
+        inf.end();
+      }
+    }
+  }
+}
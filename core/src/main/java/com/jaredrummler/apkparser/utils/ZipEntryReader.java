@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jaredrummler.apkparser.utils;
+
+import com.jaredrummler.apkparser.exception.ParserException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Reads entries of an APK file into {@link ByteBuffer}s.
+ *
+ * <p>Entries that are STORED (not compressed), which is almost always the case for
+ * resources.arsc, are memory mapped straight from the APK file. Only DEFLATED entries are inflated
+ * into a heap buffer, or, if they are larger than the spill threshold, into a temporary file that
+ * is then memory mapped.</p>
+ *
+ * <p>DEFLATED entries are inflated straight from the APK file into an array of their uncompressed
+ * size, taken from the central directory. The {@link Inflater} and the input buffer are reused
+ * per thread rather than allocated for every entry.</p>
+ */
+public class ZipEntryReader {
+
+  // mapping has a fixed cost, small entries are cheaper to read into the heap.
+  private static final int MIN_MAP_SIZE = 16 * 1024;
+  private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+  // some VMs cannot allocate arrays of exactly Integer.MAX_VALUE elements
+  private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+  // an Inflater holds native memory that is only freed by end() or finalization, reuse one per
+  // thread instead of creating one per entry.
+  private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<Inflater>() {
+    @Override protected Inflater initialValue() {
+      return new Inflater(true);
+    }
+  };
+  private static final ThreadLocal<byte[]> INPUT_BUFFER = new ThreadLocal<byte[]>() {
+    @Override protected byte[] initialValue() {
+      return new byte[INPUT_BUFFER_SIZE];
+    }
+  };
+
+  private final ZipArchive archive;
+  private final FileChannel channel;
+  private long spillThreshold = -1;
+  private File spillDirectory;
+
+  public ZipEntryReader(ZipArchive archive) {
+    this.archive = archive;
+    this.channel = archive.getChannel();
+  }
+
+  /**
+   * Read the content of an entry. STORED entries are mapped, DEFLATED entries are inflated.
+   *
+   * @param entry
+   *     the zip entry
+   * @return the (read-only, if mapped) entry data
+   * @throws IOException
+   *     if reading the APK file failed.
+   */
+  public ByteBuffer read(ZipArchive.Entry entry) throws IOException {
+    long size = entry.getSize();
+    if (entry.getMethod() == ZipEntry.STORED) {
+      long dataOffset = archive.getDataOffset(entry);
+      if (size >= MIN_MAP_SIZE) {
+        return channel.map(FileChannel.MapMode.READ_ONLY, dataOffset, size);
+      }
+      ByteBuffer buffer = ByteBuffer.allocate((int) size);
+      readFully(buffer, dataOffset);
+      buffer.flip();
+      return buffer;
+    }
+    if (spillThreshold >= 0 && size > spillThreshold) {
+      return inflateToFile(entry);
+    }
+    if (size > MAX_ARRAY_SIZE) {
+      throw new ParserException("Entry is too large: " + entry.getName());
+    }
+    ByteBuffer buffer = inflate(entry, (int) size);
+    if (buffer.remaining() != size) {
+      throw new ParserException("Entry is truncated: " + entry.getName());
+    }
+    return buffer;
+  }
+
+  /**
+   * Inflate up to {@code length} bytes of a DEFLATED entry, reading the compressed data from the
+   * APK file with the thread's Inflater.
+   *
+   * @return the inflated bytes, fewer than {@code length} if the entry ends before.
+   */
+  private ByteBuffer inflate(ZipArchive.Entry entry, int length) throws IOException {
+    if (entry.getMethod() != ZipEntry.DEFLATED) {
+      throw new ParserException("Unsupported compression method " + entry.getMethod()
+          + " of entry: " + entry.getName());
+    }
+    long dataOffset = archive.getDataOffset(entry);
+    byte[] output = new byte[length];
+    byte[] input = INPUT_BUFFER.get();
+    Inflater inflater = INFLATER.get();
+    inflater.reset();
+    long position = dataOffset;
+    long end = dataOffset + entry.getCompressedSize();
+    int count = 0;
+    try {
+      while (count < length && !inflater.finished()) {
+        if (inflater.needsInput()) {
+          if (position >= end) {
+            throw new ParserException("Entry is truncated: " + entry.getName());
+          }
+          int read = (int) Math.min(input.length, end - position);
+          readFully(ByteBuffer.wrap(input, 0, read), position);
+          position += read;
+          inflater.setInput(input, 0, read);
+        } else if (inflater.needsDictionary()) {
+          throw new ParserException("Invalid deflated data in entry: " + entry.getName());
+        }
+        count += inflater.inflate(output, count, length - count);
+      }
+    } catch (DataFormatException e) {
+      throw new ParserException("Invalid deflated data in entry: " + entry.getName(), e);
+    } finally {
+      // do not keep the input of this entry referenced until the next one
+      inflater.reset();
+    }
+    return ByteBuffer.wrap(output, 0, count);
+  }
+
+  /**
+   * Inflate an entry into a temporary file and map it. The file is deleted right away; the
+   * mapping stays valid until the buffer is garbage collected.
+   */
+  private ByteBuffer inflateToFile(ZipArchive.Entry entry) throws IOException {
+    long size = entry.getSize();
+    if (size > Integer.MAX_VALUE) {
+      throw new ParserException("Entry is too large to map: " + entry.getName());
+    }
+    File tempFile = File.createTempFile("apk-entry", ".tmp", spillDirectory);
+    RandomAccessFile out = new RandomAccessFile(tempFile, "rw");
+    try {
+      InputStream in = archive.getInputStream(entry);
+      try {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          total += read;
+          if (total > size) {
+            throw new ParserException("Entry is larger than its declared size: " + entry.getName());
+          }
+          out.write(buffer, 0, read);
+        }
+        if (total != size) {
+          throw new ParserException("Entry is truncated: " + entry.getName());
+        }
+      } finally {
+        in.close();
+      }
+      return out.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+    } finally {
+      out.close();
+      if (!tempFile.delete()) {
+        // some platforms cannot delete a mapped file
+        tempFile.deleteOnExit();
+      }
+    }
+  }
+
+  /**
+   * @return the size above which DEFLATED entries are inflated into a temporary file, or -1 if
+   * they are always inflated into the heap.
+   */
+  public long getSpillThreshold() {
+    return spillThreshold;
+  }
+
+  /**
+   * Set the size above which DEFLATED entries are inflated into a memory mapped temporary file
+   * instead of the heap. Defaults to -1, never.
+   *
+   * @param spillThreshold
+   *     the uncompressed size in bytes, or -1 to always inflate into the heap
+   */
+  public void setSpillThreshold(long spillThreshold) {
+    this.spillThreshold = spillThreshold;
+  }
+
+  public File getSpillDirectory() {
+    return spillDirectory;
+  }
+
+  /**
+   * @param spillDirectory
+   *     the directory for the temporary files of large entries, or {@code null} for the default
+   *     temporary directory
+   */
+  public void setSpillDirectory(File spillDirectory) {
+    this.spillDirectory = spillDirectory;
+  }
+
+  /**
+   * Read the first bytes of an entry. A DEFLATED entry is only inflated up to {@code length}
+   * bytes, the rest of it is never decompressed.
+   *
+   * @param entry
+   *     the zip entry
+   * @param length
+   *     the maximum number of bytes to read
+   * @return the first {@code length} bytes of the entry, or the whole entry if it is shorter
+   * @throws IOException
+   *     if reading the APK file failed.
+   */
+  public ByteBuffer readHead(ZipArchive.Entry entry, int length) throws IOException {
+    if (entry.getSize() < length) {
+      length = (int) entry.getSize();
+    }
+    if (entry.getMethod() == ZipEntry.STORED) {
+      ByteBuffer buffer = ByteBuffer.allocate(length);
+      readFully(buffer, archive.getDataOffset(entry));
+      buffer.flip();
+      return buffer;
+    }
+    return inflate(entry, length);
+  }
+
+  /**
+   * Read the content of an entry into a byte array.
+   */
+  public byte[] readBytes(ZipArchive.Entry entry) throws IOException {
+    ByteBuffer buffer = read(entry);
+    if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+        && buffer.remaining() == buffer.array().length) {
+      return buffer.array();
+    }
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    ZipArchive.readFully(channel, buffer, position);
+  }
+
+}
@@ -28,6 +28,10 @@
 
 package com.jaredrummler.apkparser.utils.xml;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
 /**
  * Utils method to escape xml string, copied from apache commons lang3
  */
@@ -37,7 +41,100 @@ public class XmlEscaper {
    * <p>Escapes the characters in a {@code String} using XML entities.</p>
    */
   public static String escapeXml10(String input) {
-    return ESCAPE_XML10.translate(input);
+    if (input == null || !needsEscaping(input)) {
+      return input;
+    }
+    StringWriter writer = new StringWriter(input.length() * 2);
+    try {
+      escapeXml10(input, writer);
+    } catch (IOException e) {
+      // this should never ever happen while writing to a StringWriter
+      throw new RuntimeException(e);
+    }
+    return writer.toString();
+  }
+
+  /**
+   * <p>Escapes the characters in a {@code String} using XML entities, writing the result to
+   * {@code out}. Produces the same output as {@link #ESCAPE_XML10}, without allocating.</p>
+   *
+   * @param input
+   *     the text to escape, may be null
+   * @param out
+   *     the writer to write the escaped text to
+   * @throws IOException
+   *     if writing to {@code out} fails
+   */
+  public static void escapeXml10(String input, Writer out) throws IOException {
+    if (input == null) {
+      return;
+    }
+    int length = input.length();
+    int start = 0; // start of the run of characters that are written unchanged
+    for (int i = 0; i < length; i++) {
+      char c = input.charAt(i);
+      if (!needsEscaping(c)) {
+        continue;
+      }
+      if (Character.isHighSurrogate(c) && i + 1 < length
+          && Character.isLowSurrogate(input.charAt(i + 1))) {
+        i++; // a valid surrogate pair is written unchanged
+        continue;
+      }
+      out.write(input, start, i - start);
+      start = i + 1;
+      switch (c) {
+        case '"':
+          out.write("&quot;");
+          break;
+        case '&':
+          out.write("&amp;");
+          break;
+        case '<':
+          out.write("&lt;");
+          break;
+        case '>':
+          out.write("&gt;");
+          break;
+        case '\'':
+          out.write("&apos;");
+          break;
+        default:
+          if ((c >= 0x7f && c <= 0x84) || (c >= 0x86 && c <= 0x9f)) {
+            // numeric entity, always three digits in this range
+            out.write("&#");
+            out.write('0' + c / 100);
+            out.write('0' + c / 10 % 10);
+            out.write('0' + c % 10);
+            out.write(';');
+          }
+          // otherwise a control character, non-character or unpaired surrogate: removed
+          break;
+      }
+    }
+    out.write(input, start, length - start);
+  }
+
+  private static boolean needsEscaping(String input) {
+    for (int i = 0, length = input.length(); i < length; i++) {
+      if (needsEscaping(input.charAt(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean needsEscaping(char c) {
+    if (c < 0x20) {
+      return c != '\t' && c != '\n' && c != '\r';
+    }
+    if (c < 0x7f) {
+      return c == '"' || c == '&' || c == '<' || c == '>' || c == '\'';
+    }
+    return c <= 0x9f && c != 0x85
+        // Character.isSurrogate(char) is only available from Android API 19
+        || c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE
+        || c == 0xfffe || c == 0xffff;
   }
 
   public static final CharSequenceTranslator ESCAPE_XML10 =
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser.struct.resource;
+
+import com.jaredrummler.apkparser.parser.ResourceTableParser;
+import com.jaredrummler.apkparser.utils.ParseUtils;
+import com.jaredrummler.apkparser.utils.Utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The split fixtures share package 0x7f: base.arsc only holds the drawable type and
+ * config.fr.arsc only the string type, each with its own string pools.
+ */
+public class ResourceTableSnapshotTest {
+
+  private static final long ICON = 0x7f010000L;
+  private static final long APP_NAME = 0x7f020000L;
+
+  @Test public void mergedTableRoundTrip() throws IOException {
+    ResourceTable merged = ResourceTable.merge(Arrays.asList(
+        parse("split/base.arsc"), parse("split/config.fr.arsc")));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ResourceTableSnapshot.write(merged, out);
+    ResourceTable snapshot = ResourceTableSnapshot.read(ByteBuffer.wrap(out.toByteArray()));
+
+    for (Locale locale : new Locale[]{Locale.US, Locale.FRENCH}) {
+      for (long id : new long[]{ICON, APP_NAME}) {
+        assertEquals(ParseUtils.getResourceById(id, merged, locale),
+            ParseUtils.getResourceById(id, snapshot, locale));
+      }
+    }
+    assertEquals("res/drawable/icon.png", ParseUtils.getResourceById(ICON, snapshot, Locale.US));
+    assertEquals("SplitLabel", ParseUtils.getResourceById(APP_NAME, snapshot, Locale.US));
+    assertEquals("SplitLabel (fr)", ParseUtils.getResourceById(APP_NAME, snapshot, Locale.FRENCH));
+  }
+
+  private static ResourceTable parse(String name) throws IOException {
+    InputStream in = ResourceTableSnapshotTest.class.getClassLoader().getResourceAsStream(name);
+    ResourceTableParser parser = new ResourceTableParser(ByteBuffer.wrap(Utils.toByteArray(in)));
+    parser.parse();
+    return parser.getResourceTable();
+  }
+
+}
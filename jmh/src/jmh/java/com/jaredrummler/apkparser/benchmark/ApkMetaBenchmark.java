@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser.benchmark;
+
+import com.jaredrummler.apkparser.ApkParseCache;
+import com.jaredrummler.apkparser.ApkParser;
+import com.jaredrummler.apkparser.ManifestQuery;
+import com.jaredrummler.apkparser.model.ApkMeta;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Opens an APK and reads its meta data, in full or only the package name and version, or reads it
+ * back from a warm {@link ApkParseCache}.
+ */
+@State(Scope.Benchmark)
+public class ApkMetaBenchmark {
+
+  @Param({
+      SyntheticApkGenerator.SMALL,
+      SyntheticApkGenerator.HUGE_RESOURCES,
+      SyntheticApkGenerator.MULTIDEX
+  })
+  public String apk;
+
+  private static final ManifestQuery PACKAGE_AND_VERSION =
+      ManifestQuery.of("manifest@package", "manifest@versionCode", "manifest@versionName");
+
+  private File cacheDir;
+  private ApkParseCache cache;
+
+  @Setup
+  public void setUp() throws IOException {
+    cacheDir = File.createTempFile("apk-cache", "");
+    cacheDir.delete();
+    cache = ApkParseCache.newBuilder(cacheDir).build();
+    cache.get(BenchmarkApks.file(apk));
+  }
+
+  @TearDown
+  public void tearDown() {
+    cache.clear();
+    cacheDir.delete();
+  }
+
+  @Benchmark
+  public ApkMeta getApkMeta() throws IOException {
+    ApkParser parser = ApkParser.create(BenchmarkApks.file(apk));
+    try {
+      return parser.getApkMeta();
+    } finally {
+      parser.close();
+    }
+  }
+
+  @Benchmark
+  public ManifestQuery.Result queryPackageAndVersion() throws IOException {
+    ApkParser parser = ApkParser.create(BenchmarkApks.file(apk));
+    try {
+      return parser.queryManifest(PACKAGE_AND_VERSION);
+    } finally {
+      parser.close();
+    }
+  }
+
+  @Benchmark
+  public ApkMeta getApkMetaFromCache() throws IOException {
+    return cache.get(BenchmarkApks.file(apk)).getApkMeta();
+  }
+
+}
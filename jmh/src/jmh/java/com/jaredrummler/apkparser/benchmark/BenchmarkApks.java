@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser.benchmark;
+
+import com.jaredrummler.apkparser.utils.Utils;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Locates the synthetic APKs written by {@link SyntheticApkGenerator} before the benchmarks run.
+ */
+final class BenchmarkApks {
+
+  /** System property naming the directory the build generated the APKs into. */
+  static final String DIRECTORY_PROPERTY = "apkparser.benchmark.apks";
+
+  static File file(String name) throws FileNotFoundException {
+    String directory = System.getProperty(DIRECTORY_PROPERTY);
+    if (directory == null) {
+      throw new IllegalStateException(DIRECTORY_PROPERTY + " is not set");
+    }
+    File file = new File(directory, name);
+    if (!file.isFile()) {
+      throw new FileNotFoundException(file.getPath());
+    }
+    return file;
+  }
+
+  /**
+   * @return a heap buffer holding the uncompressed entry, or {@code null} if the APK has no such
+   * entry.
+   */
+  static ByteBuffer readEntry(String apk, String path) throws IOException {
+    ZipFile zipFile = new ZipFile(file(apk));
+    try {
+      ZipEntry entry = zipFile.getEntry(path);
+      if (entry == null) {
+        return null;
+      }
+      InputStream in = zipFile.getInputStream(entry);
+      try {
+        return ByteBuffer.wrap(Utils.toByteArray(in));
+      } finally {
+        in.close();
+      }
+    } finally {
+      zipFile.close();
+    }
+  }
+
+  private BenchmarkApks() {
+  }
+
+}
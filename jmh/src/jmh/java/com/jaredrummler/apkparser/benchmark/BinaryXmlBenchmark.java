@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser.benchmark;
+
+import com.jaredrummler.apkparser.model.ApkMeta;
+import com.jaredrummler.apkparser.parser.ApkMetaTranslator;
+import com.jaredrummler.apkparser.parser.BinaryXmlParser;
+import com.jaredrummler.apkparser.parser.ResourceTableParser;
+import com.jaredrummler.apkparser.parser.XmlCursor;
+import com.jaredrummler.apkparser.parser.XmlCursorListener;
+import com.jaredrummler.apkparser.parser.XmlStreamer;
+import com.jaredrummler.apkparser.parser.XmlTranslator;
+import com.jaredrummler.apkparser.struct.AndroidConstants;
+import com.jaredrummler.apkparser.struct.resource.ResourceTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Parses AndroidManifest.xml against an already parsed resource table.
+ */
+@State(Scope.Benchmark)
+public class BinaryXmlBenchmark {
+
+  @Param({SyntheticApkGenerator.SMALL, SyntheticApkGenerator.HUGE_RESOURCES})
+  public String apk;
+
+  private ByteBuffer manifest;
+  private ResourceTable resourceTable;
+
+  @Setup
+  public void setUp() throws IOException {
+    manifest = BenchmarkApks.readEntry(apk, AndroidConstants.MANIFEST_FILE);
+    ResourceTableParser parser =
+        new ResourceTableParser(BenchmarkApks.readEntry(apk, AndroidConstants.RESOURCE_FILE));
+    parser.parse();
+    resourceTable = parser.getResourceTable();
+  }
+
+  @Benchmark
+  public String translateXml() throws IOException {
+    XmlTranslator translator = new XmlTranslator();
+    parse(translator);
+    return translator.getXml();
+  }
+
+  @Benchmark
+  public ApkMeta translateApkMeta() throws IOException {
+    ApkMetaTranslator translator = new ApkMetaTranslator();
+    parse(translator);
+    return translator.getApkMeta();
+  }
+
+  @Benchmark
+  public String readPackageWithCursor() throws IOException {
+    final String[] packageName = new String[1];
+    BinaryXmlParser parser = new BinaryXmlParser(manifest, resourceTable);
+    parser.setLocale(Locale.US);
+    parser.setXmlCursorListener(new XmlCursorListener() {
+      @Override public void onStartTag(XmlCursor cursor) {
+        if (cursor.getDepth() == 1) {
+          packageName[0] = cursor.getAttributeValue("package");
+        }
+      }
+
+      @Override public void onEndTag(XmlCursor cursor) {
+      }
+    });
+    parser.parse();
+    return packageName[0];
+  }
+
+  private void parse(XmlStreamer xmlStreamer) throws IOException {
+    BinaryXmlParser parser = new BinaryXmlParser(manifest, resourceTable);
+    parser.setLocale(Locale.US);
+    parser.setXmlStreamer(xmlStreamer);
+    parser.parse();
+  }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser.benchmark;
+
+import com.jaredrummler.apkparser.ApkParser;
+import com.jaredrummler.apkparser.model.DexSummary;
+import com.jaredrummler.apkparser.parser.DexParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses every dex file of an APK from memory, one after the other, or reads only the dex headers
+ * from the APK file.
+ */
+@State(Scope.Benchmark)
+public class DexBenchmark {
+
+  @Param({SyntheticApkGenerator.SMALL, SyntheticApkGenerator.MULTIDEX})
+  public String apk;
+
+  private List<ByteBuffer> dexFiles;
+
+  @Setup
+  public void setUp() throws IOException {
+    dexFiles = new ArrayList<>();
+    ByteBuffer dex = BenchmarkApks.readEntry(apk, "classes.dex");
+    while (dex != null) {
+      dexFiles.add(dex);
+      dex = BenchmarkApks.readEntry(apk, "classes" + (dexFiles.size() + 1) + ".dex");
+    }
+  }
+
+  @Benchmark
+  public void parse(Blackhole blackhole) throws IOException {
+    for (ByteBuffer dex : dexFiles) {
+      blackhole.consume(new DexParser(dex).parse());
+    }
+  }
+
+  @Benchmark
+  public DexSummary getDexSummary() throws IOException {
+    ApkParser parser = ApkParser.create(BenchmarkApks.file(apk));
+    try {
+      return parser.getDexSummary();
+    } finally {
+      parser.close();
+    }
+  }
+
+}
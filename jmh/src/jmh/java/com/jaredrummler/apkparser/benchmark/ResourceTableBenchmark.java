@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser.benchmark;
+
+import com.jaredrummler.apkparser.parser.ResourceTableParser;
+import com.jaredrummler.apkparser.struct.AndroidConstants;
+import com.jaredrummler.apkparser.struct.resource.ResourceTable;
+import com.jaredrummler.apkparser.struct.resource.ResourceTableSnapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Parses resources.arsc from memory, or maps a snapshot of the parsed table.
+ */
+@State(Scope.Benchmark)
+public class ResourceTableBenchmark {
+
+  @Param({SyntheticApkGenerator.SMALL, SyntheticApkGenerator.HUGE_RESOURCES})
+  public String apk;
+
+  private ByteBuffer resourceTable;
+  private File snapshot;
+
+  @Setup
+  public void setUp() throws IOException {
+    resourceTable = BenchmarkApks.readEntry(apk, AndroidConstants.RESOURCE_FILE);
+    snapshot = File.createTempFile("resources", ".snapshot");
+    ResourceTableSnapshot.write(parse(), snapshot);
+  }
+
+  @TearDown
+  public void tearDown() {
+    snapshot.delete();
+  }
+
+  @Benchmark
+  public ResourceTable parse() throws IOException {
+    ResourceTableParser parser = new ResourceTableParser(resourceTable);
+    parser.parse();
+    return parser.getResourceTable();
+  }
+
+  @Benchmark
+  public ResourceTable mapSnapshot() throws IOException {
+    return ResourceTableSnapshot.map(snapshot);
+  }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser.benchmark;
+
+import com.jaredrummler.apkparser.struct.StringPool;
+import com.jaredrummler.apkparser.struct.StringPoolHeader;
+import com.jaredrummler.apkparser.utils.ParseUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a string pool chunk, with and without decoding every string in it.
+ */
+@State(Scope.Benchmark)
+public class StringPoolBenchmark {
+
+  @Param({"true", "false"})
+  public boolean utf8;
+
+  @Param({"10000"})
+  public int size;
+
+  private ByteBuffer chunk;
+  private StringPoolHeader header;
+
+  @Setup
+  public void setUp() {
+    List<String> strings = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      strings.add("com.example.app:string/value_" + i);
+    }
+    chunk = ByteBuffer.wrap(SyntheticApkGenerator.stringPool(strings, utf8));
+    chunk.order(ByteOrder.LITTLE_ENDIAN);
+    header = new StringPoolHeader(chunk.getShort(0), chunk.getShort(2), chunk.getInt(4));
+    header.setStringCount(chunk.getInt(8));
+    header.setStyleCount(chunk.getInt(12));
+    header.setFlags(chunk.getInt(16));
+    header.setStringsStart(chunk.getInt(20));
+    header.setStylesStart(chunk.getInt(24));
+  }
+
+  @Benchmark
+  public StringPool read() {
+    return ParseUtils.readStringPool(body(), header);
+  }
+
+  @Benchmark
+  public void readAndDecode(Blackhole blackhole) {
+    StringPool pool = ParseUtils.readStringPool(body(), header);
+    for (int i = 0; i < size; i++) {
+      blackhole.consume(pool.get(i));
+    }
+  }
+
+  private ByteBuffer body() {
+    ByteBuffer body = chunk.duplicate();
+    body.order(ByteOrder.LITTLE_ENDIAN);
+    body.position(header.getHeaderSize());
+    return body;
+  }
+
+}
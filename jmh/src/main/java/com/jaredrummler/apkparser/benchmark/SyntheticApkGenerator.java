@@ -0,0 +1,469 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes the synthetic APKs the benchmarks run against.
+ *
+ * <p>The APKs contain a binary AndroidManifest.xml, a stored resources.arsc with a default and a
+ * "fr" configuration, one or more dex files, a binary layout and a plain text asset. They are not
+ * installable, but they exercise every parser in the library.</p>
+ */
+public class SyntheticApkGenerator {
+
+  /** A few dozen resources, two dex files. */
+  public static final String SMALL = "small.apk";
+  /** Tens of thousands of string resources and a manifest with hundreds of permissions. */
+  public static final String HUGE_RESOURCES = "huge-resources.apk";
+  /** Twenty dex files with large string tables. */
+  public static final String MULTIDEX = "multidex.apk";
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+
+  private static final int TYPE_REFERENCE = 0x01;
+  private static final int TYPE_STRING = 0x03;
+  private static final int TYPE_INT_DEC = 0x10;
+  private static final int TYPE_INT_BOOLEAN = 0x12;
+
+  private static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("usage: SyntheticApkGenerator <output directory>");
+      System.exit(1);
+    }
+    File dir = new File(args[0]);
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("cannot create " + dir);
+    }
+    write(new File(dir, SMALL), 2, 20, 100, 5);
+    write(new File(dir, HUGE_RESOURCES), 2, 50000, 100, 500);
+    write(new File(dir, MULTIDEX), 20, 20, 20000, 5);
+  }
+
+  /**
+   * Write a synthetic APK.
+   *
+   * @param file
+   *     the APK to write
+   * @param dexCount
+   *     the number of dex files
+   * @param extraResources
+   *     the number of string resources beyond the app name
+   * @param extraDexStrings
+   *     the number of unreferenced strings in each dex file
+   * @param extraPermissions
+   *     the number of uses-permission elements in the manifest
+   */
+  public static void write(File file, int dexCount, int extraResources, int extraDexStrings,
+                           int extraPermissions) throws IOException {
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+    try {
+      putDeflated(out, "AndroidManifest.xml",
+          binaryXml("com.example.app", 42, "1.2.3", extraPermissions, false));
+      putStored(out, "resources.arsc", resourceTable("com.example.app", "Example", extraResources));
+      for (int i = 0; i < dexCount; i++) {
+        String name = i == 0 ? "classes.dex" : "classes" + (i + 1) + ".dex";
+        List<String[]> classes = new ArrayList<>();
+        for (int j = 0; j < 3; j++) {
+          classes.add(new String[]{"Lcom/example/D" + i + "/C" + j + ";", "Ljava/lang/Object;"});
+        }
+        putDeflated(out, name, dex(classes, extraDexStrings));
+      }
+      putStored(out, "res/drawable/icon.png", "PNG fake icon".getBytes(UTF_8));
+      putDeflated(out, "res/layout/main.xml", binaryXml("com.example.app", 1, "x", 0, true));
+      putDeflated(out, "assets/readme.txt", "hello plain text".getBytes(UTF_8));
+    } finally {
+      out.close();
+    }
+  }
+
+  private static void putDeflated(ZipOutputStream out, String name, byte[] data)
+      throws IOException {
+    ZipEntry entry = new ZipEntry(name);
+    entry.setMethod(ZipEntry.DEFLATED);
+    out.putNextEntry(entry);
+    out.write(data);
+    out.closeEntry();
+  }
+
+  private static void putStored(ZipOutputStream out, String name, byte[] data)
+      throws IOException {
+    ZipEntry entry = new ZipEntry(name);
+    entry.setMethod(ZipEntry.STORED);
+    CRC32 crc = new CRC32();
+    crc.update(data);
+    entry.setCrc(crc.getValue());
+    entry.setSize(data.length);
+    entry.setCompressedSize(data.length);
+    out.putNextEntry(entry);
+    out.write(data);
+    out.closeEntry();
+  }
+
+  static byte[] stringPool(List<String> strings, boolean utf8) {
+    LittleEndianOutput data = new LittleEndianOutput();
+    int[] offsets = new int[strings.size()];
+    for (int i = 0; i < offsets.length; i++) {
+      String s = strings.get(i);
+      offsets[i] = data.size();
+      if (utf8) {
+        byte[] encoded = s.getBytes(UTF_8);
+        writeLength8(data, s.length());
+        writeLength8(data, encoded.length);
+        data.write(encoded, 0, encoded.length);
+        data.u8(0);
+      } else {
+        byte[] encoded = s.getBytes(UTF_16LE);
+        data.u16(s.length());
+        data.write(encoded, 0, encoded.length);
+        data.u16(0);
+      }
+    }
+    data.pad4();
+
+    int headerSize = 28;
+    int stringsStart = headerSize + 4 * offsets.length;
+    LittleEndianOutput out = new LittleEndianOutput();
+    out.u16(0x0001).u16(headerSize).u32(stringsStart + data.size());
+    out.u32(offsets.length).u32(0).u32(utf8 ? 1 << 8 : 0).u32(stringsStart).u32(0);
+    for (int offset : offsets) {
+      out.u32(offset);
+    }
+    out.bytes(data.toByteArray());
+    return out.toByteArray();
+  }
+
+  private static void writeLength8(LittleEndianOutput out, int length) {
+    if (length < 0x80) {
+      out.u8(length);
+    } else {
+      out.u8(0x80 | (length >> 8)).u8(length & 0xff);
+    }
+  }
+
+  private static byte[] chunk(int type, byte[] headerExtra, byte[] body) {
+    int headerSize = 8 + headerExtra.length;
+    return new LittleEndianOutput()
+        .u16(type).u16(headerSize).u32(headerSize + body.length)
+        .bytes(headerExtra).bytes(body)
+        .toByteArray();
+  }
+
+  private static LittleEndianOutput resValue(LittleEndianOutput out, int type, int data) {
+    return out.u16(8).u8(0).u8(type).u32(data);
+  }
+
+  static byte[] binaryXml(String pkg, int versionCode, String versionName, int extraPermissions,
+                          boolean utf8) {
+    List<String> strings = new ArrayList<>(Arrays.asList(
+        "label", "icon", "name", "versionCode", "versionName", "minSdkVersion", "exported",
+        "android", ANDROID_NS, "", "manifest", "package", pkg, versionName, "application",
+        "activity", ".Main", "intent-filter", "action", "android.intent.action.MAIN", "category",
+        "android.intent.category.LAUNCHER", "uses-sdk", "uses-permission", "service", ".Svc"));
+    int permissionBase = strings.size();
+    for (int i = 0; i < extraPermissions; i++) {
+      strings.add("com.example.permission.P" + i);
+    }
+    Map<String, Integer> index = new HashMap<>();
+    for (int i = strings.size() - 1; i >= 0; i--) {
+      index.put(strings.get(i), i);
+    }
+    XmlWriter xml = new XmlWriter(index);
+    int android = index.get(ANDROID_NS);
+
+    LittleEndianOutput out = new LittleEndianOutput();
+    out.bytes(stringPool(strings, utf8));
+    LittleEndianOutput resourceMap = new LittleEndianOutput();
+    for (int id : new int[]{0x01010001, 0x01010002, 0x01010003, 0x0101021b, 0x0101021c,
+        0x0101020c, 0x01010010}) {
+      resourceMap.u32(id);
+    }
+    out.bytes(chunk(0x0180, new byte[0], resourceMap.toByteArray()));
+    byte[] namespace = new LittleEndianOutput().u32(index.get("android")).u32(android)
+        .toByteArray();
+    out.bytes(chunk(0x0100, XmlWriter.NODE_HEADER, namespace));
+
+    xml.start(out, "manifest",
+        xml.attr(android, "versionCode", -1, TYPE_INT_DEC, versionCode),
+        xml.attr(android, "versionName", index.get(versionName), TYPE_STRING,
+            index.get(versionName)),
+        xml.attr(-1, "package", index.get(pkg), TYPE_STRING, index.get(pkg)));
+    xml.start(out, "uses-sdk", xml.attr(android, "minSdkVersion", -1, TYPE_INT_DEC, 21));
+    xml.end(out, "uses-sdk");
+    for (int i = 0; i < extraPermissions; i++) {
+      int s = permissionBase + i;
+      xml.start(out, "uses-permission", xml.attr(android, "name", s, TYPE_STRING, s));
+      xml.end(out, "uses-permission");
+    }
+    xml.start(out, "application",
+        xml.attr(android, "label", -1, TYPE_REFERENCE, 0x7f020000),
+        xml.attr(android, "icon", -1, TYPE_REFERENCE, 0x7f010000));
+    xml.start(out, "activity",
+        xml.attr(android, "name", index.get(".Main"), TYPE_STRING, index.get(".Main")),
+        xml.attr(android, "exported", -1, TYPE_INT_BOOLEAN, -1));
+    xml.start(out, "intent-filter");
+    int action = index.get("android.intent.action.MAIN");
+    xml.start(out, "action", xml.attr(android, "name", action, TYPE_STRING, action));
+    xml.end(out, "action");
+    int category = index.get("android.intent.category.LAUNCHER");
+    xml.start(out, "category", xml.attr(android, "name", category, TYPE_STRING, category));
+    xml.end(out, "category");
+    xml.end(out, "intent-filter");
+    xml.end(out, "activity");
+    xml.start(out, "service",
+        xml.attr(android, "name", index.get(".Svc"), TYPE_STRING, index.get(".Svc")));
+    xml.end(out, "service");
+    xml.end(out, "application");
+    xml.end(out, "manifest");
+    out.bytes(chunk(0x0101, XmlWriter.NODE_HEADER, namespace));
+    return chunk(0x0003, new byte[0], out.toByteArray());
+  }
+
+  static byte[] resourceTable(String pkg, String label, int extraStrings) {
+    List<String> globalStrings = new ArrayList<>();
+    globalStrings.add("res/drawable/icon.png");
+    globalStrings.add(label);
+    globalStrings.add(label + " (fr)");
+    List<String> keys = new ArrayList<>();
+    keys.add("icon");
+    keys.add("app_name");
+    for (int i = 0; i < extraStrings; i++) {
+      globalStrings.add("value " + i);
+      keys.add("s" + i);
+    }
+    byte[] typeStrings = stringPool(Arrays.asList("drawable", "string"), false);
+    byte[] keyStrings = stringPool(keys, true);
+
+    int[][] stringEntries = new int[1 + extraStrings][];
+    stringEntries[0] = new int[]{1, 1};
+    for (int i = 0; i < extraStrings; i++) {
+      stringEntries[i + 1] = new int[]{2 + i, 3 + i};
+    }
+    int[][] frenchEntries = stringEntries.clone();
+    frenchEntries[0] = new int[]{1, 2};
+
+    LittleEndianOutput body = new LittleEndianOutput();
+    body.bytes(typeSpec(1, 1));
+    body.bytes(type(1, new int[][]{{0, 0}}, config(null)));
+    body.bytes(typeSpec(2, stringEntries.length));
+    body.bytes(type(2, stringEntries, config(null)));
+    body.bytes(type(2, frenchEntries, config("fr")));
+
+    byte[] name = Arrays.copyOf(pkg.getBytes(UTF_16LE), 256);
+    int headerSize = 288;
+    byte[] packageHeader = new LittleEndianOutput()
+        .u32(0x7f).bytes(name)
+        .u32(headerSize).u32(2).u32(headerSize + typeStrings.length).u32(keys.size()).u32(0)
+        .toByteArray();
+    byte[] packageBody = new LittleEndianOutput()
+        .bytes(typeStrings).bytes(keyStrings).bytes(body.toByteArray())
+        .toByteArray();
+    byte[] tableBody = new LittleEndianOutput()
+        .bytes(stringPool(globalStrings, true))
+        .bytes(chunk(0x0200, packageHeader, packageBody))
+        .toByteArray();
+    return chunk(0x0002, new LittleEndianOutput().u32(1).toByteArray(), tableBody);
+  }
+
+  private static byte[] config(String language) {
+    LittleEndianOutput out = new LittleEndianOutput().u32(64).u16(0).u16(0);
+    if (language == null) {
+      out.u16(0);
+    } else {
+      out.bytes(language.getBytes(UTF_8));
+    }
+    return Arrays.copyOf(out.toByteArray(), 64);
+  }
+
+  private static byte[] typeSpec(int id, int entryCount) {
+    LittleEndianOutput flags = new LittleEndianOutput();
+    for (int i = 0; i < entryCount; i++) {
+      flags.u32(0);
+    }
+    byte[] header = new LittleEndianOutput().u8(id).u8(0).u16(0).u32(entryCount).toByteArray();
+    return chunk(0x0202, header, flags.toByteArray());
+  }
+
+  /** Each entry is {key index, global string index}. */
+  private static byte[] type(int id, int[][] entries, byte[] config) {
+    LittleEndianOutput offsets = new LittleEndianOutput();
+    LittleEndianOutput data = new LittleEndianOutput();
+    for (int[] entry : entries) {
+      offsets.u32(data.size());
+      data.u16(8).u16(0).u32(entry[0]);
+      resValue(data, TYPE_STRING, entry[1]);
+    }
+    int headerSize = 8 + 12 + 64;
+    int entriesStart = headerSize + 4 * entries.length;
+    byte[] header = new LittleEndianOutput()
+        .u8(id).u8(0).u16(0).u32(entries.length).u32(entriesStart).bytes(config)
+        .toByteArray();
+    byte[] body = new LittleEndianOutput()
+        .bytes(offsets.toByteArray()).bytes(data.toByteArray())
+        .toByteArray();
+    return chunk(0x0201, header, body);
+  }
+
+  /** Each class is {descriptor, superclass descriptor}. */
+  static byte[] dex(List<String[]> classes, int extraStrings) {
+    TreeSet<String> sorted = new TreeSet<>();
+    for (String[] c : classes) {
+      sorted.add(c[0]);
+      sorted.add(c[1]);
+    }
+    List<String> types = new ArrayList<>(sorted);
+    List<String> strings = new ArrayList<>(sorted);
+    for (int i = 0; i < extraStrings; i++) {
+      strings.add(String.format("method%05d", i));
+    }
+
+    int headerSize = 0x70;
+    int stringIdsOff = headerSize;
+    int typeIdsOff = stringIdsOff + 4 * strings.size();
+    int classDefsOff = typeIdsOff + 4 * types.size();
+    int dataOff = classDefsOff + 32 * classes.size();
+
+    LittleEndianOutput data = new LittleEndianOutput();
+    LittleEndianOutput body = new LittleEndianOutput();
+    for (String s : strings) {
+      body.u32(dataOff + data.size());
+      data.uleb128(s.length()).bytes(s.getBytes(UTF_8)).u8(0);
+    }
+    for (String type : types) {
+      body.u32(strings.indexOf(type));
+    }
+    for (String[] c : classes) {
+      body.u32(types.indexOf(c[0])).u32(1).u32(types.indexOf(c[1])).u32(0)
+          .u32(0xffffffff).u32(0).u32(0).u32(0);
+    }
+
+    int fileSize = headerSize + body.size() + data.size();
+    LittleEndianOutput out = new LittleEndianOutput();
+    out.bytes("dex\n035\0".getBytes(UTF_8)).u32(0).bytes(new byte[20]);
+    out.u32(fileSize).u32(headerSize).u32(0x12345678).u32(0).u32(0).u32(0);
+    out.u32(strings.size()).u32(stringIdsOff);
+    out.u32(types.size()).u32(typeIdsOff);
+    out.u32(7).u32(0);
+    out.u32(11).u32(0);
+    out.u32(13 + extraStrings).u32(0);
+    out.u32(classes.size()).u32(classDefsOff);
+    out.u32(data.size()).u32(dataOff);
+    out.bytes(body.toByteArray()).bytes(data.toByteArray());
+    return out.toByteArray();
+  }
+
+  private static class XmlWriter {
+
+    // line number and comment index of every node
+    static final byte[] NODE_HEADER = new LittleEndianOutput().u32(1).u32(0xffffffff)
+        .toByteArray();
+
+    private final Map<String, Integer> index;
+
+    XmlWriter(Map<String, Integer> index) {
+      this.index = index;
+    }
+
+    byte[] attr(int namespace, String name, int rawValue, int type, int data) {
+      LittleEndianOutput out = new LittleEndianOutput()
+          .u32(namespace).u32(index.get(name)).u32(rawValue);
+      return resValue(out, type, data).toByteArray();
+    }
+
+    void start(LittleEndianOutput out, String name, byte[]... attrs) {
+      LittleEndianOutput body = new LittleEndianOutput()
+          .u32(-1).u32(index.get(name)).u16(20).u16(20).u16(attrs.length).u16(0).u16(0).u16(0);
+      for (byte[] attr : attrs) {
+        body.bytes(attr);
+      }
+      out.bytes(chunk(0x0102, NODE_HEADER, body.toByteArray()));
+    }
+
+    void end(LittleEndianOutput out, String name) {
+      byte[] body = new LittleEndianOutput().u32(-1).u32(index.get(name)).toByteArray();
+      out.bytes(chunk(0x0103, NODE_HEADER, body));
+    }
+  }
+
+  private static class LittleEndianOutput extends ByteArrayOutputStream {
+
+    LittleEndianOutput u8(int value) {
+      write(value);
+      return this;
+    }
+
+    LittleEndianOutput u16(int value) {
+      write(value);
+      write(value >>> 8);
+      return this;
+    }
+
+    LittleEndianOutput u32(int value) {
+      return u16(value & 0xffff).u16(value >>> 16);
+    }
+
+    LittleEndianOutput uleb128(int value) {
+      while ((value & ~0x7f) != 0) {
+        write((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      write(value);
+      return this;
+    }
+
+    LittleEndianOutput bytes(byte[] bytes) {
+      write(bytes, 0, bytes.length);
+      return this;
+    }
+
+    void pad4() {
+      while (size() % 4 != 0) {
+        write(0);
+      }
+    }
+  }
+
+}
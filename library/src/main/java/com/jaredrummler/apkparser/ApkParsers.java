@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2015, Jared Rummler
+ * Copyright (c) 2015, Liu Dong
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.jaredrummler.apkparser;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates an {@link ApkParser} or, for apps installed as split APKs, an {@link ApkSetParser} for
+ * an installed application.
+ *
+ * <p>The parser itself has no Android dependencies; this class only maps the framework's package
+ * records to the APK on disk.</p>
+ */
+public final class ApkParsers {
+
+  public static ApkParser create(PackageManager pm, String packageName)
+      throws PackageManager.NameNotFoundException {
+    return create(pm.getApplicationInfo(packageName, 0));
+  }
+
+  public static ApkParser create(PackageInfo packageInfo) {
+    return create(packageInfo.applicationInfo);
+  }
+
+  public static ApkParser create(ApplicationInfo applicationInfo) {
+    return ApkParser.create(new File(applicationInfo.sourceDir));
+  }
+
+  public static ApkSetParser createSet(PackageManager pm, String packageName)
+      throws PackageManager.NameNotFoundException {
+    return createSet(pm.getApplicationInfo(packageName, 0));
+  }
+
+  public static ApkSetParser createSet(PackageInfo packageInfo) {
+    return createSet(packageInfo.applicationInfo);
+  }
+
+  /**
+   * Create a parser for the base APK and the split APKs of an app. Splits only exist on
+   * Lollipop and later; before, the set holds just the base APK.
+   */
+  public static ApkSetParser createSet(ApplicationInfo applicationInfo) {
+    List<File> splits = new ArrayList<>();
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+        && applicationInfo.splitSourceDirs != null) {
+      for (String splitSourceDir : applicationInfo.splitSourceDirs) {
+        splits.add(new File(splitSourceDir));
+      }
+    }
+    return ApkSetParser.create(new File(applicationInfo.sourceDir), splits);
+  }
+
+  private ApkParsers() {
+  }
+
+}
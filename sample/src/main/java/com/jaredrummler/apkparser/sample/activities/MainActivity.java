@@ -27,7 +27,7 @@ import android.support.v7.app.AppCompatActivity;
 import android.widget.Toast;
 
 import com.jaredrummler.apkparser.ApkParser;
-import com.jaredrummler.apkparser.model.DexInfo;
+import com.jaredrummler.apkparser.ApkParsers;
 import com.jaredrummler.apkparser.sample.dialogs.XmlListDialog;
 import com.jaredrummler.apkparser.sample.fragments.AppListFragment;
 import com.jaredrummler.apkparser.sample.interfaces.ApkParserSample;
@@ -35,7 +35,6 @@ import com.jaredrummler.apkparser.sample.util.Helper;
 
 import java.io.IOException;
 import java.text.NumberFormat;
-import java.util.List;
 
 public class MainActivity extends AppCompatActivity implements ApkParserSample {
 
@@ -80,13 +79,10 @@ public class MainActivity extends AppCompatActivity implements ApkParserSample {
     new Thread(new Runnable() {
 
       @Override public void run() {
-        ApkParser parser = ApkParser.create(app);
+        ApkParser parser = ApkParsers.create(app);
         try {
-          List<DexInfo> dexInfos = parser.getDexInfos();
-          int methodCount = 0;
-          for (DexInfo dexInfo : dexInfos) {
-            methodCount += dexInfo.header.methodIdsSize;
-          }
+          // only the dex headers are read, the classes are not needed for the count
+          int methodCount = parser.getDexSummary().methodCount;
           String message = NumberFormat.getNumberInstance().format(methodCount);
           toast(message, Toast.LENGTH_SHORT);
         } catch (IOException e) {
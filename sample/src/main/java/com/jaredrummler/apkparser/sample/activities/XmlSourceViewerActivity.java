@@ -31,6 +31,7 @@ import android.webkit.WebViewClient;
 import android.widget.ProgressBar;
 
 import com.jaredrummler.apkparser.ApkParser;
+import com.jaredrummler.apkparser.ApkParsers;
 import com.jaredrummler.apkparser.sample.R;
 import com.jaredrummler.apkparser.sample.util.AppNames;
 
@@ -125,7 +126,7 @@ public class XmlSourceViewerActivity extends AppCompatActivity {
   private final class AndroidXmlLoader extends AsyncTask<PackageInfo, Void, String> {
 
     @Override protected String doInBackground(PackageInfo... params) {
-      ApkParser apkParser = ApkParser.create(params[0].applicationInfo);
+      ApkParser apkParser = ApkParsers.create(params[0].applicationInfo);
       try {
         final String source;
         if (xml.equals("AndroidManifest.xml")) {